@@ -0,0 +1,61 @@
+package com.example.controllers;
+
+import com.example.Application;
+import com.example.models.Todo;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * リクエストボディのパース方法の比較
+ * legacyはTodoServlet書き換え前の objectMapper.readValue(req.getReader(), Todo.class) 相当
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TodoParseBenchmark {
+    private static final String BODY = """
+        {"title":"牛乳を買う","description":"帰りにスーパーで","priority":"medium",
+         "category":"shopping","completed":false,"dueDate":"2024-06-01T18:00:00"}
+        """;
+
+    private ObjectMapper objectMapper;
+    private ObjectReader todoReader;
+    private byte[] body;
+
+    @Setup
+    public void setUp() {
+        objectMapper = Application.createObjectMapper();
+        todoReader = objectMapper.readerFor(Todo.class);
+        body = BODY.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Todo readTodo() throws IOException {
+        return todoReader.readValue(new ByteArrayInputStream(body));
+    }
+
+    @Benchmark
+    public Todo readTodoLegacy() throws IOException {
+        return objectMapper.readValue(
+            new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8), Todo.class);
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.services;
+
+import com.example.models.Todo;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * TodoService.validateTodoと、書き換え前の実装(legacy)の比較
+ * -prof gc を付けると、成功時にアロケーションが発生しないことを確認できる
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class TodoValidationBenchmark {
+    private static final List<String> VALID_PRIORITIES = List.of("low", "medium", "high");
+    private static final List<String> VALID_CATEGORIES = List.of("none", "work", "personal", "shopping", "study");
+    private static final int MAX_TITLE_LENGTH = 100;
+    private static final int MAX_DESCRIPTION_LENGTH = 500;
+
+    private TodoService todoService;
+    private Todo validTodo;
+    private Todo invalidTodo;
+
+    @Setup
+    public void setUp() {
+        // 親Todoを指定しなければリポジトリには触れない
+        todoService = new TodoService(null, new TagIndex());
+        validTodo = new Todo("牛乳を買う", "帰りにスーパーで", "medium", "shopping");
+        invalidTodo = new Todo("  ", "説明", "urgent", "unknown");
+    }
+
+    @Benchmark
+    public List<String> validateValid() {
+        return todoService.validateTodo(validTodo, true);
+    }
+
+    @Benchmark
+    public List<String> validateValidLegacy() {
+        return legacyValidateTodo(validTodo);
+    }
+
+    @Benchmark
+    public List<String> validateInvalid() {
+        return todoService.validateTodo(invalidTodo, true);
+    }
+
+    @Benchmark
+    public List<String> validateInvalidLegacy() {
+        return legacyValidateTodo(invalidTodo);
+    }
+
+    /**
+     * 書き換え前のTodoService.validateTodo
+     */
+    private static List<String> legacyValidateTodo(Todo todo) {
+        List<String> errors = new ArrayList<>();
+
+        if (todo.getTitle() == null || todo.getTitle().trim().isEmpty()) {
+            errors.add("タイトルは必須です");
+        } else if (todo.getTitle().length() > MAX_TITLE_LENGTH) {
+            errors.add(String.format("タイトルは%d文字以内で入力してください", MAX_TITLE_LENGTH));
+        }
+
+        if (todo.getDescription() != null && todo.getDescription().length() > MAX_DESCRIPTION_LENGTH) {
+            errors.add(String.format("説明は%d文字以内で入力してください", MAX_DESCRIPTION_LENGTH));
+        }
+
+        if (todo.getPriority() == null || !VALID_PRIORITIES.contains(todo.getPriority())) {
+            errors.add("優先度は以下のいずれかを選択してください: " + String.join(", ", VALID_PRIORITIES));
+        }
+
+        if (todo.getCategory() == null || !VALID_CATEGORIES.contains(todo.getCategory())) {
+            errors.add("カテゴリーは以下のいずれかを選択してください: " + String.join(", ", VALID_CATEGORIES));
+        }
+
+        return errors;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.loadtest;
+
+import com.example.models.Todo;
+import com.example.repositories.TodoRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 負荷試験用にTodoをデータベースへ投入する
+ * 既存の件数を数え、目標件数に足りない分だけを追加する
+ */
+public class DataSeeder {
+    private static final int BATCH_SIZE = 10_000;
+
+    private final TodoRepository todoRepository;
+    private final TodoGenerator todoGenerator;
+
+    public DataSeeder(TodoRepository todoRepository, TodoGenerator todoGenerator) {
+        this.todoRepository = todoRepository;
+        this.todoGenerator = todoGenerator;
+    }
+
+    /**
+     * @return 追加した件数
+     */
+    public long seed(long targetCount) {
+        long existing = todoRepository.count();
+        long remaining = targetCount - existing;
+        if (remaining <= 0) {
+            System.out.printf("Seed skipped: %d todos already exist%n", existing);
+            return 0;
+        }
+
+        long start = System.nanoTime();
+        long inserted = 0;
+        List<Todo> batch = new ArrayList<>(BATCH_SIZE);
+        while (inserted < remaining) {
+            int size = (int) Math.min(BATCH_SIZE, remaining - inserted);
+            batch.clear();
+            for (int i = 0; i < size; i++) {
+                batch.add(todoGenerator.next());
+            }
+            inserted += todoRepository.insertAll(batch);
+            if (inserted % (BATCH_SIZE * 10) == 0) {
+                System.out.printf("Seeded %d / %d todos%n", inserted, remaining);
+            }
+        }
+
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Seeded %d todos in %.1fs (%.0f rows/s)%n", inserted, seconds, inserted / seconds);
+        return inserted;
+    }
+}
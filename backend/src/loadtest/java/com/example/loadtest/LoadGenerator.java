@@ -0,0 +1,261 @@
+package com.example.loadtest;
+
+import com.example.Application;
+import com.example.config.DatabaseConfig;
+import com.example.repositories.TodoRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.jetty.server.Server;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Todo APIの負荷試験ツール
+ * データを投入した後に組み込みのサーバーを起動し、指定した操作の比率でHTTPリクエストを送る
+ *
+ * リクエストは応答を待たずに一定間隔で送信する(オープンループ)。
+ * レイテンシは実際の送信時刻ではなく本来の送信予定時刻から計測するので、
+ * サーバーや送信側が詰まった時間もレイテンシに含まれる(coordinated omissionの補正)。
+ * 未完了リクエスト数の上限(maxOutstanding)を指定して送信を見送った場合、レイテンシが欠けるのでその試験結果は無効とする。
+ */
+public class LoadGenerator {
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(30);
+    private static final double[] REPORTED_PERCENTILES = {50, 90, 99, 99.9};
+
+    private final LoadTestOptions options;
+    private final long maxId;
+    private final URI baseUri;
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final TodoGenerator todoGenerator = new TodoGenerator();
+    private final Operation[] operations;
+    private final int[] cumulativeWeights;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    public LoadGenerator(LoadTestOptions options, long maxId) {
+        this.options = options;
+        this.maxId = Math.max(1, maxId);
+        this.baseUri = URI.create("http://127.0.0.1:" + options.getPort() + "/api/todos");
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(REQUEST_TIMEOUT)
+            .build();
+        this.objectMapper = Application.createObjectMapper();
+
+        Map<Operation, Integer> mix = options.getMix();
+        this.operations = Operation.values();
+        this.cumulativeWeights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            cumulativeWeights[i] = total;
+            stats.put(operations[i], new OperationStats());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options = LoadTestOptions.parse(args);
+
+        DatabaseConfig.initialize();
+        Server server = null;
+        boolean valid;
+        try {
+            TodoRepository todoRepository = new TodoRepository(DatabaseConfig.getDataSource());
+            new DataSeeder(todoRepository, new TodoGenerator()).seed(options.getSeedCount());
+            long maxId = todoRepository.findMaxId();
+
+            server = Application.createServer(options.getPort(), clientApiKeys(options.getClients()));
+            server.start();
+            System.out.println("Server started on port " + options.getPort());
+
+            valid = new LoadGenerator(options, maxId).run();
+        } finally {
+            if (server != null) {
+                server.stop();
+            }
+            DatabaseConfig.close();
+        }
+        if (!valid) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @return 全てのリクエストを予定どおり送信できた(結果が有効な)場合はtrue
+     */
+    public boolean run() {
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.getRequestsPerSecond();
+        long start = System.nanoTime();
+        long measureStart = start + TimeUnit.SECONDS.toNanos(options.getWarmupSeconds());
+        long end = measureStart + TimeUnit.SECONDS.toNanos(options.getDurationSeconds());
+
+        System.out.printf("Running %.0f req/s for %ds (warm-up %ds) against %s%n",
+            options.getRequestsPerSecond(), options.getDurationSeconds(), options.getWarmupSeconds(), baseUri);
+
+        for (long i = 0; ; i++) {
+            long intendedStart = start + (long) (i * intervalNanos);
+            if (intendedStart >= end) {
+                break;
+            }
+            waitUntil(intendedStart);
+            send(nextOperation(), intendedStart, intendedStart >= measureStart);
+        }
+
+        long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        return report(options.getDurationSeconds());
+    }
+
+    private void send(Operation operation, long intendedStart, boolean measured) {
+        OperationStats operationStats = stats.get(operation);
+        int maxOutstanding = options.getMaxOutstanding();
+        if (maxOutstanding > 0 && outstanding.get() >= maxOutstanding) {
+            if (measured) {
+                operationStats.recordDropped();
+            }
+            return;
+        }
+
+        HttpRequest request = buildRequest(operation);
+        outstanding.incrementAndGet();
+        httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .whenComplete((response, error) -> {
+                long latencyNanos = System.nanoTime() - intendedStart;
+                outstanding.decrementAndGet();
+                if (!measured) {
+                    return;
+                }
+                if (error != null) {
+                    operationStats.recordFailure(latencyNanos);
+                } else {
+                    operationStats.recordResponse(response.statusCode(), latencyNanos);
+                }
+            });
+    }
+
+    /**
+     * 負荷試験のクライアントが使うAPIキーを、サーバーに登録する一覧として生成する
+     */
+    private static Set<String> clientApiKeys(int clients) {
+        Set<String> keys = new HashSet<>();
+        for (int i = 0; i < clients; i++) {
+            keys.add(clientApiKey(i));
+        }
+        return keys;
+    }
+
+    private static String clientApiKey(int client) {
+        return "loadtest-" + client;
+    }
+
+    private HttpRequest buildRequest(Operation operation) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        HttpRequest.Builder builder = HttpRequest.newBuilder()
+            .timeout(REQUEST_TIMEOUT)
+            .header("Content-Type", "application/json")
+            // クライアントごとのレート制限を受けるよう、複数のクライアントに分散させる
+            .header("X-API-Key", clientApiKey(random.nextInt(options.getClients())));
+
+        switch (operation) {
+            case LIST:
+                return builder.uri(baseUri).GET().build();
+            case GET:
+                return builder.uri(randomTodoUri(random)).GET().build();
+            case CREATE:
+                return builder.uri(baseUri).POST(randomTodoBody()).build();
+            case UPDATE:
+                return builder.uri(randomTodoUri(random)).PUT(randomTodoBody()).build();
+            case DELETE:
+                return builder.uri(randomTodoUri(random)).DELETE().build();
+            default:
+                throw new IllegalStateException("未対応の操作です: " + operation);
+        }
+    }
+
+    private URI randomTodoUri(ThreadLocalRandom random) {
+        return URI.create(baseUri + "/" + random.nextLong(1, maxId + 1));
+    }
+
+    private HttpRequest.BodyPublisher randomTodoBody() {
+        try {
+            return HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(todoGenerator.next()));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Operation nextOperation() {
+        int value = ThreadLocalRandom.current().nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (value < cumulativeWeights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+
+    private static void waitUntil(long deadlineNanos) {
+        long remaining;
+        while ((remaining = deadlineNanos - System.nanoTime()) > 0) {
+            LockSupport.parkNanos(remaining);
+        }
+    }
+
+    private boolean report(int durationSeconds) {
+        System.out.println();
+        System.out.printf("%-8s %10s %10s %8s %8s %8s %8s %10s %10s %10s %10s %10s %10s%n",
+            "op", "completed", "req/s", "ok", "404", "429", "error", "dropped",
+            "p50(ms)", "p90(ms)", "p99(ms)", "p99.9(ms)", "max(ms)");
+
+        long totalCompleted = 0;
+        long totalDropped = 0;
+        for (Operation operation : operations) {
+            OperationStats s = stats.get(operation);
+            long completed = s.getLatency().getTotalCount();
+            if (completed == 0 && s.getDropped() == 0) {
+                continue;
+            }
+            totalCompleted += completed;
+            totalDropped += s.getDropped();
+
+            StringBuilder line = new StringBuilder(String.format("%-8s %10d %10.1f %8d %8d %8d %8d %10d",
+                operation.name().toLowerCase(Locale.ROOT), completed, (double) completed / durationSeconds,
+                s.getSucceeded(), s.getNotFound(), s.getRateLimited(), s.getFailed(), s.getDropped()));
+            for (double percentile : REPORTED_PERCENTILES) {
+                line.append(String.format(" %10.2f", s.getLatency().getValueAtPercentile(percentile) / 1000.0));
+            }
+            line.append(String.format(" %10.2f", s.getLatency().getMaxValue() / 1000.0));
+            System.out.println(line);
+        }
+
+        System.out.printf("%nTotal throughput: %.1f req/s (target %.1f req/s)%n",
+            (double) totalCompleted / durationSeconds, options.getRequestsPerSecond());
+
+        if (totalDropped > 0) {
+            System.out.printf("%nINVALID RUN: %d requests were not sent (maxOutstanding=%d).%n"
+                + "Latency percentiles exclude them; rerun without maxOutstanding or at a lower rate.%n",
+                totalDropped, options.getMaxOutstanding());
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.loadtest;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 負荷試験の設定
+ * 引数は key=value 形式で指定する(例: rate=1000 duration=300 mix=get=70,create=30)
+ */
+public class LoadTestOptions {
+    private static final Map<String, String> DEFAULTS = Map.of(
+        "port", "8081",
+        "seed", "1000000",
+        "rate", "500",
+        "warmup", "10",
+        "duration", "60",
+        "clients", "100",
+        // 未完了リクエスト数の上限(0は無制限)。上限で送信を見送ると結果は無効になる
+        "maxOutstanding", "0",
+        // 一覧取得は全件を返すため、大量データでは明示的に指定したときだけ実行する
+        "mix", "list=0,get=60,create=15,update=20,delete=5");
+
+    private final int port;
+    private final long seedCount;
+    private final double requestsPerSecond;
+    private final int warmupSeconds;
+    private final int durationSeconds;
+    private final int clients;
+    private final int maxOutstanding;
+    private final Map<Operation, Integer> mix;
+
+    private LoadTestOptions(Map<String, String> values) {
+        this.port = Integer.parseInt(values.get("port"));
+        this.seedCount = Long.parseLong(values.get("seed"));
+        this.requestsPerSecond = Double.parseDouble(values.get("rate"));
+        this.warmupSeconds = Integer.parseInt(values.get("warmup"));
+        this.durationSeconds = Integer.parseInt(values.get("duration"));
+        this.clients = Integer.parseInt(values.get("clients"));
+        this.maxOutstanding = Integer.parseInt(values.get("maxOutstanding"));
+        this.mix = parseMix(values.get("mix"));
+
+        if (requestsPerSecond <= 0 || durationSeconds <= 0 || clients <= 0) {
+            throw new IllegalArgumentException("rate, duration, clients は正の値を指定してください");
+        }
+        if (maxOutstanding < 0) {
+            throw new IllegalArgumentException("maxOutstanding は0以上を指定してください");
+        }
+    }
+
+    public static LoadTestOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("引数は key=value 形式で指定してください: " + arg);
+            }
+            String key = arg.substring(0, separator);
+            if (!DEFAULTS.containsKey(key)) {
+                throw new IllegalArgumentException("不明なオプションです: " + key);
+            }
+            values.put(key, arg.substring(separator + 1));
+        }
+        return new LoadTestOptions(values);
+    }
+
+    private static Map<Operation, Integer> parseMix(String value) {
+        Map<Operation, Integer> mix = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            mix.put(operation, 0);
+        }
+        int total = 0;
+        for (String entry : value.split(",")) {
+            String[] pair = entry.split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("mix は op=weight をカンマ区切りで指定してください: " + value);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight < 0) {
+                throw new IllegalArgumentException("mix の重みは0以上を指定してください: " + entry);
+            }
+            mix.put(Operation.fromName(pair[0].trim()), weight);
+            total += weight;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("mix には1つ以上の操作を指定してください");
+        }
+        return mix;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public long getSeedCount() {
+        return seedCount;
+    }
+
+    public double getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public int getWarmupSeconds() {
+        return warmupSeconds;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public int getClients() {
+        return clients;
+    }
+
+    /**
+     * @return 未完了リクエスト数の上限(0は無制限)
+     */
+    public int getMaxOutstanding() {
+        return maxOutstanding;
+    }
+
+    public Map<Operation, Integer> getMix() {
+        return mix;
+    }
+}
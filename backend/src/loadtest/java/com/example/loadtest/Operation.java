@@ -0,0 +1,22 @@
+package com.example.loadtest;
+
+import java.util.Locale;
+
+/**
+ * 負荷試験で発行するAPI操作
+ */
+public enum Operation {
+    LIST,
+    GET,
+    CREATE,
+    UPDATE,
+    DELETE;
+
+    public static Operation fromName(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("不明な操作です: " + name, e);
+        }
+    }
+}
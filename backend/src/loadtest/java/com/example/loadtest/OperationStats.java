@@ -0,0 +1,73 @@
+package com.example.loadtest;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 操作ごとの結果とレイテンシの集計
+ */
+public class OperationStats {
+    private static final int SC_NOT_FOUND = 404;
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder succeeded = new LongAdder();
+    private final LongAdder notFound = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    /**
+     * レスポンスを記録する
+     * @param latencyNanos 本来の送信予定時刻からの経過時間
+     */
+    public void recordResponse(int status, long latencyNanos) {
+        latency.record(latencyNanos / 1_000);
+        if (status >= 200 && status < 300) {
+            succeeded.increment();
+        } else if (status == SC_NOT_FOUND) {
+            // 削除済みのIDを引くことがあるため、エラーとは区別する
+            notFound.increment();
+        } else if (status == SC_TOO_MANY_REQUESTS) {
+            rateLimited.increment();
+        } else {
+            failed.increment();
+        }
+    }
+
+    public void recordFailure(long latencyNanos) {
+        latency.record(latencyNanos / 1_000);
+        failed.increment();
+    }
+
+    /**
+     * 未完了のリクエストが多すぎて送信しなかったリクエストを記録する
+     * 実際のレイテンシは分からないのでヒストグラムには含めない(1件でもあればその試験結果は無効)
+     */
+    public void recordDropped() {
+        dropped.increment();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public long getSucceeded() {
+        return succeeded.sum();
+    }
+
+    public long getNotFound() {
+        return notFound.sum();
+    }
+
+    public long getRateLimited() {
+        return rateLimited.sum();
+    }
+
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    public long getDropped() {
+        return dropped.sum();
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.loadtest;
+
+import com.example.models.Todo;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * それらしい内容のTodoをランダムに生成する
+ * 優先度とカテゴリーはTodoServiceのバリデーションを通る値のみを使う
+ */
+public class TodoGenerator {
+    private static final List<String> PRIORITIES = List.of("low", "medium", "high");
+    private static final List<String> CATEGORIES = List.of("none", "work", "personal", "shopping", "study");
+    private static final List<String> VERBS = List.of(
+        "買う", "確認する", "送る", "予約する", "まとめる", "片付ける", "返信する", "支払う", "準備する", "復習する");
+    private static final List<String> OBJECTS = List.of(
+        "牛乳", "議事録", "請求書", "歯医者", "レポート", "部屋", "メール", "家賃", "プレゼン資料", "英単語");
+    private static final List<String> DESCRIPTIONS = List.of(
+        "忘れないように早めに対応する",
+        "詳細は共有フォルダを参照",
+        "週末までに終わらせたい",
+        "関係者に確認してから進める");
+    private static final List<String> TAGS = List.of(
+        "urgent", "home", "office", "errand", "finance", "health", "reading", "weekly", "waiting", "idea");
+    private static final int MAX_TAGS_PER_TODO = 3;
+
+    public Todo next() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        Todo todo = new Todo(
+            pick(OBJECTS, random) + "を" + pick(VERBS, random),
+            random.nextInt(3) == 0 ? null : pick(DESCRIPTIONS, random),
+            pick(PRIORITIES, random),
+            pick(CATEGORIES, random));
+        todo.setCompleted(random.nextInt(10) < 3);
+        if (random.nextBoolean()) {
+            todo.setDueDate(LocalDateTime.now().withNano(0).plusHours(random.nextInt(-24 * 30, 24 * 90)));
+        }
+        todo.setTags(pickDistinct(TAGS, random.nextInt(MAX_TAGS_PER_TODO + 1), random));
+        return todo;
+    }
+
+    private static List<String> pickDistinct(List<String> values, int count, ThreadLocalRandom random) {
+        int offset = random.nextInt(values.size());
+        List<String> picked = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            picked.add(values.get((offset + i) % values.size()));
+        }
+        return picked;
+    }
+
+    private static String pick(List<String> values, ThreadLocalRandom random) {
+        return values.get(random.nextInt(values.size()));
+    }
+}
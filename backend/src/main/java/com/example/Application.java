@@ -1,49 +1,171 @@
 package com.example;
 
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.servlet.FilterHolder;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 import com.example.config.DatabaseConfig;
+import com.example.config.StartupTimer;
 import com.example.controllers.TodoServlet;
+import com.example.filters.AdaptiveConcurrencyLimiter;
+import com.example.filters.RateLimitFilter;
+import com.example.filters.StartupTimingFilter;
 import com.example.repositories.TodoRepository;
+import com.example.services.TagIndex;
 import com.example.services.TodoService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import javax.servlet.DispatcherType;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class Application {
     private static final int PORT = 8080;
+    // これを超えるレイテンシが続いたら同時実行数を絞る
+    private static final long TARGET_LATENCY_MILLIS = 200;
+    // AppCDSアーカイブ作成用の学習実行では、起動して1リクエスト処理した後に終了する
+    private static final String CDS_TRAINING_PROPERTY = "todo.cds.training";
+    // レート制限でクライアントを識別するAPIキー(カンマ区切り)
+    private static final String API_KEYS_ENV = "API_KEYS";
 
     public static void main(String[] args) throws Exception {
-        // データベース設定の初期化
-        DatabaseConfig.initialize();
+        StartupTimer.mark("main");
 
+        // 学習実行は本番のデータベースとポートに触れないよう、一時ディレクトリと空きポートを使う
+        boolean training = Boolean.getBoolean(CDS_TRAINING_PROPERTY);
+        Path trainingDir = training ? Files.createTempDirectory("todo-cds-training") : null;
+
+        // データベースの初期化(SQLiteのネイティブライブラリ読み込みを含む)はJacksonの準備と並行して行う
+        CompletableFuture<Void> databaseInitialization = CompletableFuture.runAsync(() -> {
+            if (trainingDir != null) {
+                DatabaseConfig.initialize(trainingDir.resolve("todo.db").toString());
+            } else {
+                DatabaseConfig.initialize();
+            }
+            StartupTimer.mark("database");
+        });
+        ObjectMapper objectMapper = createObjectMapper();
+        StartupTimer.mark("jackson");
+        databaseInitialization.join();
+
+        Server server = createServer(training ? 0 : PORT, loadApiKeys(), objectMapper);
+
+        try {
+            server.start();
+            StartupTimer.mark("server started");
+            int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+            System.out.println("Server started on port " + port);
+            StartupTimer.printReport();
+
+            if (training) {
+                runTrainingRequest(port);
+                server.stop();
+                DatabaseConfig.close();
+                deleteRecursively(trainingDir);
+                return;
+            }
+
+            server.join();
+        } catch (Exception e) {
+            e.printStackTrace();
+            server.stop();
+            System.exit(1);
+        }
+    }
+
+    /**
+     * APIを登録したJettyサーバーを生成する(起動はしない)
+     * DatabaseConfigは初期化済みである必要がある
+     */
+    public static Server createServer(int port, Set<String> apiKeys) {
+        return createServer(port, apiKeys, createObjectMapper());
+    }
+
+    private static Server createServer(int port, Set<String> apiKeys, ObjectMapper objectMapper) {
         // 依存オブジェクトの作成
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.registerModule(new com.fasterxml.jackson.datatype.jsr310.JavaTimeModule());
-        objectMapper.disable(com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
         TodoRepository todoRepository = new TodoRepository(DatabaseConfig.getDataSource());
-        TodoService todoService = new TodoService(todoRepository);
+        // タグ検索用の索引は起動を待たせないようバックグラウンドで構築する(完了まではSQLで検索する)
+        TagIndex tagIndex = new TagIndex();
+        CompletableFuture.runAsync(() -> {
+            todoRepository.forEachTagLink(tagIndex::add);
+            tagIndex.markReady();
+        }).exceptionally(e -> {
+            e.printStackTrace();
+            return null;
+        });
+        TodoService todoService = new TodoService(todoRepository, tagIndex);
         
         // サーブレットの設定
         TodoServlet todoServlet = new TodoServlet(todoService, objectMapper);
+        // 同時実行数はコネクションプールのサイズを上限とする
+        RateLimitFilter rateLimitFilter = new RateLimitFilter(
+            new AdaptiveConcurrencyLimiter(1, DatabaseConfig.MAXIMUM_POOL_SIZE, TARGET_LATENCY_MILLIS),
+            apiKeys, objectMapper);
         
-        // Jettyサーバーの設定
-        Server server = new Server(PORT);
-        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.SESSIONS);
+        // Jettyサーバーの設定(APIはセッションを使わないのでセッション管理は無効にする)
+        Server server = new Server(port);
+        ServletContextHandler context = new ServletContextHandler(ServletContextHandler.NO_SESSIONS);
         context.setContextPath("/");
         server.setHandler(context);
 
         // APIエンドポイントの登録
-        // APIエンドポイントの登録
+        context.addFilter(new FilterHolder(new StartupTimingFilter()), "/api/todos/*", EnumSet.of(DispatcherType.REQUEST));
+        context.addFilter(new FilterHolder(rateLimitFilter), "/api/todos/*", EnumSet.of(DispatcherType.REQUEST));
         context.addServlet(new ServletHolder(todoServlet), "/api/todos/*");
 
+        return server;
+    }
+
+    private static Set<String> loadApiKeys() {
+        String value = System.getenv(API_KEYS_ENV);
+        if (value == null) {
+            return Set.of();
+        }
+        return Arrays.stream(value.split(","))
+            .map(String::trim)
+            .filter(key -> !key.isEmpty())
+            .collect(Collectors.toSet());
+    }
+
+    /**
+     * APIで使うObjectMapperを生成する(ベンチマークや負荷試験ツールでも同じ設定を使う)
+     */
+    public static ObjectMapper createObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+        objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        return objectMapper;
+    }
+
+    /**
+     * リクエスト処理で使うクラスもアーカイブに含まれるよう、存在しないIDを1件取得する
+     */
+    private static void runTrainingRequest(int port) throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL("http://127.0.0.1:" + port + "/api/todos/0").openConnection();
         try {
-            server.start();
-            System.out.println("Server started on port " + PORT);
-            server.join();
-        } catch (Exception e) {
-            e.printStackTrace();
-            server.stop();
-            System.exit(1);
+            System.out.println("CDS training request: HTTP " + conn.getResponseCode());
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
         }
     }
 }
@@ -4,21 +4,36 @@ import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 import javax.sql.DataSource;
 import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
 
 public class DatabaseConfig {
+    public static final int MAXIMUM_POOL_SIZE = 10;
+    // 起動時に同期で開くのは1本だけで、残りはHikariがバックグラウンドで補充する
+    private static final int MINIMUM_IDLE = 5;
+
+    private static final String DEFAULT_DB_PATH = "todo.db";
+
     private static HikariDataSource dataSource;
 
     public static void initialize() {
+        initialize(DEFAULT_DB_PATH);
+    }
+
+    /**
+     * 指定したファイルのデータベースで初期化する
+     */
+    public static void initialize(String dbFile) {
         HikariConfig config = new HikariConfig();
         
         // データベースファイルのパスを設定
-        String dbPath = new File("todo.db").getAbsolutePath();
+        String dbPath = new File(dbFile).getAbsolutePath();
         config.setJdbcUrl("jdbc:sqlite:" + dbPath);
         config.setDriverClassName("org.sqlite.JDBC");
         
         // コネクションプールの設定
-        config.setMaximumPoolSize(10);
-        config.setMinimumIdle(5);
+        config.setMaximumPoolSize(MAXIMUM_POOL_SIZE);
+        config.setMinimumIdle(MINIMUM_IDLE);
         config.setIdleTimeout(300000);
         config.setConnectionTimeout(20000);
         
@@ -29,10 +44,13 @@ public class DatabaseConfig {
         dataSource = new HikariDataSource(config);
         
         // テーブルの初期化
-        initializeDatabase();
+        createSchema(dataSource);
     }
 
-    private static void initializeDatabase() {
+    /**
+     * テーブルと索引を作成する(作成済みのものはそのまま)
+     */
+    public static void createSchema(DataSource dataSource) {
         try (var conn = dataSource.getConnection();
              var stmt = conn.createStatement()) {
             
@@ -47,15 +65,51 @@ public class DatabaseConfig {
                     completed BOOLEAN NOT NULL DEFAULT 0,
                     due_date TIMESTAMP,
                     created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+                    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                    parent_id INTEGER REFERENCES todos(id)
                 )
             """);
+
+            // 既存のデータベースにはサブタスク用の列を追加する
+            if (!hasColumn(conn, "todos", "parent_id")) {
+                stmt.execute("ALTER TABLE todos ADD COLUMN parent_id INTEGER REFERENCES todos(id)");
+            }
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_todos_parent_id ON todos(parent_id)");
+
+            // タグと、Todoとの多対多の関連テーブルの作成
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS tags (
+                    id INTEGER PRIMARY KEY AUTOINCREMENT,
+                    name VARCHAR(30) NOT NULL UNIQUE
+                )
+            """);
+            stmt.execute("""
+                CREATE TABLE IF NOT EXISTS todo_tags (
+                    todo_id INTEGER NOT NULL REFERENCES todos(id),
+                    tag_id INTEGER NOT NULL REFERENCES tags(id),
+                    PRIMARY KEY (todo_id, tag_id)
+                ) WITHOUT ROWID
+            """);
+            // タグからTodoを引くための索引
+            stmt.execute("CREATE INDEX IF NOT EXISTS idx_todo_tags_tag_id ON todo_tags(tag_id, todo_id)");
             
         } catch (Exception e) {
             throw new RuntimeException("データベースの初期化に失敗しました", e);
         }
     }
 
+    private static boolean hasColumn(Connection conn, String table, String column) throws SQLException {
+        try (var stmt = conn.createStatement();
+             var rs = stmt.executeQuery("PRAGMA table_info(" + table + ")")) {
+            while (rs.next()) {
+                if (column.equalsIgnoreCase(rs.getString("name"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
     public static DataSource getDataSource() {
         if (dataSource == null) {
             throw new IllegalStateException("データベースが初期化されていません");
@@ -0,0 +1,41 @@
+package com.example.config;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 起動処理の各段階にかかった時間を記録し、レポートを出力する
+ * 時間はすべてJVMの起動時刻からの経過ミリ秒
+ */
+public class StartupTimer {
+    // RuntimeMXBeanは管理用のクラスを大量に読み込むので、起動時刻はProcessHandleから取得する
+    private static final long JVM_START_MILLIS = ProcessHandle.current().info().startInstant()
+        .map(Instant::toEpochMilli)
+        .orElseGet(System::currentTimeMillis);
+    private static final Map<String, Long> phases = new LinkedHashMap<>();
+    private static final AtomicBoolean firstRequestSeen = new AtomicBoolean();
+
+    public static synchronized void mark(String phase) {
+        phases.put(phase, elapsedMillis());
+    }
+
+    public static synchronized void printReport() {
+        System.out.println("Startup timing (ms since JVM start):");
+        phases.forEach((phase, millis) -> System.out.printf("  %-20s %6d%n", phase, millis));
+    }
+
+    /**
+     * 最初のリクエストを受け付けた時点を記録する(2回目以降は何もしない)
+     */
+    public static void markFirstRequest() {
+        if (!firstRequestSeen.get() && firstRequestSeen.compareAndSet(false, true)) {
+            System.out.printf("Time to first request: %d ms since JVM start%n", elapsedMillis());
+        }
+    }
+
+    private static long elapsedMillis() {
+        return System.currentTimeMillis() - JVM_START_MILLIS;
+    }
+}
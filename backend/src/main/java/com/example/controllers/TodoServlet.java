@@ -5,26 +5,36 @@ import com.example.exceptions.ValidationException;
 import com.example.models.Todo;
 import com.example.services.TodoService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 public class TodoServlet extends HttpServlet {
-    private static final String ALLOWED_ORIGIN = "http://127.0.0.1:5500";
+    public static final String ALLOWED_ORIGIN = "http://127.0.0.1:5500";
     private static final String ALLOWED_METHODS = "GET, POST, PUT, DELETE, OPTIONS";
-    private static final String ALLOWED_HEADERS = "Content-Type, Accept";
+    // X-API-KeyはRateLimitFilterでクライアントの識別に使う
+    private static final String ALLOWED_HEADERS = "Content-Type, Accept, X-API-Key";
+    private static final String SUBTASKS_SUFFIX = "/subtasks";
+    // タグでの絞り込みで1回に返す件数
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 1000;
 
     private final TodoService todoService;
     private final ObjectMapper objectMapper;
+    // リクエストごとに型解決しないよう、Todo用のReaderを事前に構築しておく
+    private final ObjectReader todoReader;
 
     public TodoServlet(TodoService todoService, ObjectMapper objectMapper) {
         this.todoService = todoService;
         this.objectMapper = objectMapper;
+        this.todoReader = objectMapper.readerFor(Todo.class);
     }
 
     private void setResponseHeaders(HttpServletResponse resp) {
@@ -44,13 +54,74 @@ public class TodoServlet extends HttpServlet {
         if (pathInfo == null || pathInfo.equals("/")) {
             throw new ValidationException("ID is required", List.of("ID is required"));
         }
+        return parseId(pathInfo.substring(1));
+    }
+
+    private Long parseId(String value) throws ValidationException {
         try {
-            return Long.parseLong(pathInfo.substring(1));
+            return Long.parseLong(value);
         } catch (NumberFormatException e) {
             throw new ValidationException("Invalid ID format", List.of("Invalid ID format"));
         }
     }
 
+    /**
+     * クエリパラメータ tags=a,b を空要素を除いたリストに変換する
+     */
+    private List<String> extractTags(HttpServletRequest req) {
+        String tagsParam = req.getParameter("tags");
+        if (tagsParam == null) {
+            return null;
+        }
+        List<String> tags = new ArrayList<>();
+        for (String tag : tagsParam.split(",")) {
+            String trimmed = tag.trim();
+            if (!trimmed.isEmpty()) {
+                tags.add(trimmed);
+            }
+        }
+        return tags;
+    }
+
+    /**
+     * クエリパラメータ limit を1ページの件数に変換する(省略時は既定の件数)
+     */
+    private int extractLimit(HttpServletRequest req) throws ValidationException {
+        String limitParam = req.getParameter("limit");
+        if (limitParam == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        try {
+            int limit = Integer.parseInt(limitParam);
+            if (limit >= 1 && limit <= MAX_PAGE_SIZE) {
+                return limit;
+            }
+        } catch (NumberFormatException e) {
+            // 下で検証エラーにする
+        }
+        String message = "limit must be between 1 and " + MAX_PAGE_SIZE;
+        throw new ValidationException(message, List.of(message));
+    }
+
+    /**
+     * クエリパラメータ cursor(前のページの最後のID)を変換する(省略時はnull)
+     */
+    private Long extractCursor(HttpServletRequest req) throws ValidationException {
+        String cursorParam = req.getParameter("cursor");
+        if (cursorParam == null) {
+            return null;
+        }
+        try {
+            long cursor = Long.parseLong(cursorParam);
+            if (cursor > 0) {
+                return cursor;
+            }
+        } catch (NumberFormatException e) {
+            // 下で検証エラーにする
+        }
+        throw new ValidationException("Invalid cursor", List.of("Invalid cursor"));
+    }
+
     private void handleError(HttpServletResponse resp, Exception e) throws IOException {
         if (e instanceof NumberFormatException) {
             sendErrorResponse(resp, HttpServletResponse.SC_BAD_REQUEST, "Invalid ID format");
@@ -73,6 +144,15 @@ public class TodoServlet extends HttpServlet {
         objectMapper.writeValue(resp.getWriter(), Map.of("error", message));
     }
 
+    private Todo readTodo(HttpServletRequest req) throws IOException {
+        // Content-Typeで文字コードが指定されていればそれに従ってデコードする
+        if (req.getCharacterEncoding() != null) {
+            return todoReader.readValue(req.getReader());
+        }
+        // 指定がなければJSONの既定(UTF-8)として、バイトストリームから直接パースする
+        return todoReader.readValue(req.getInputStream());
+    }
+
     private <T> void writeJsonResponse(HttpServletResponse resp, T data) 
             throws IOException {
         objectMapper.writeValue(resp.getWriter(), data);
@@ -98,7 +178,23 @@ public class TodoServlet extends HttpServlet {
         try {
             String pathInfo = req.getPathInfo();
             if (pathInfo == null || pathInfo.equals("/")) {
-                writeJsonResponse(resp, todoService.getAllTodos());
+                List<String> tags = extractTags(req);
+                if (tags != null && !tags.isEmpty()) {
+                    writeJsonResponse(resp,
+                        todoService.getTodosByTags(tags, extractCursor(req), extractLimit(req)));
+                } else {
+                    writeJsonResponse(resp, todoService.getAllTodos());
+                }
+                return;
+            }
+
+            if (pathInfo.endsWith(SUBTASKS_SUFFIX)) {
+                int idEnd = pathInfo.length() - SUBTASKS_SUFFIX.length();
+                if (idEnd <= 1) {
+                    throw new ValidationException("ID is required", List.of("ID is required"));
+                }
+                Long parentId = parseId(pathInfo.substring(1, idEnd));
+                writeJsonResponse(resp, todoService.getSubtasks(parentId));
                 return;
             }
             
@@ -130,7 +226,7 @@ public class TodoServlet extends HttpServlet {
             throws ServletException, IOException {
         setResponseHeaders(resp);
         try {
-            Todo todo = objectMapper.readValue(req.getReader(), Todo.class);
+            Todo todo = readTodo(req);
             Todo createdTodo = todoService.createTodo(todo);
             writeJsonResponse(resp, createdTodo, HttpServletResponse.SC_CREATED);
         } catch (Exception e) {
@@ -144,7 +240,7 @@ public class TodoServlet extends HttpServlet {
         setResponseHeaders(resp);
         try {
             Long id = extractIdFromPath(req);
-            Todo todo = objectMapper.readValue(req.getReader(), Todo.class);
+            Todo todo = readTodo(req);
             todo.setId(id);
             Todo updatedTodo = todoService.updateTodo(todo);
             writeJsonResponse(resp, updatedTodo);
@@ -0,0 +1,96 @@
+package com.example.filters;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 観測したレイテンシに応じて同時実行数の上限を調整するリミッター
+ * 一定時間ごとの集計で、遅いリクエストの割合が閾値を超えたら上限を一定割合で減らし(p90が目標超過)、
+ * そうでなく上限まで使い切っていたら上限を1増やす(AIMD)
+ * 1件だけ遅いリクエストがあっても上限は変わらない
+ */
+public class AdaptiveConcurrencyLimiter {
+    private static final double DECREASE_RATIO = 0.9;
+    // 集計の間隔と、判断に必要な最小サンプル数
+    static final long WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    static final int MIN_SAMPLES = 20;
+    // 目標レイテンシを超えたリクエストがこの割合を超えたら上限を下げる
+    private static final double SLOW_RATIO_THRESHOLD = 0.1;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long targetLatencyNanos;
+    private final AtomicInteger limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong windowStartNanos;
+    private final AtomicInteger samples = new AtomicInteger();
+    private final AtomicInteger slowSamples = new AtomicInteger();
+    private final AtomicBoolean saturated = new AtomicBoolean();
+
+    public AdaptiveConcurrencyLimiter(int minLimit, int maxLimit, long targetLatencyMillis) {
+        if (minLimit <= 0 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("同時実行数の上限の指定が不正です");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.limit = new AtomicInteger(maxLimit);
+        this.windowStartNanos = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * 実行枠を確保する
+     * @return 確保できた場合はtrue
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit.get()) {
+                saturated.set(true);
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 実行枠を解放し、観測したレイテンシを集計に加える
+     */
+    public void release(long latencyNanos, long nowNanos) {
+        if (inFlight.getAndDecrement() >= limit.get()) {
+            saturated.set(true);
+        }
+        samples.incrementAndGet();
+        if (latencyNanos > targetLatencyNanos) {
+            slowSamples.incrementAndGet();
+        }
+
+        long windowStart = windowStartNanos.get();
+        if (nowNanos - windowStart >= WINDOW_NANOS
+                && samples.get() >= MIN_SAMPLES
+                && windowStartNanos.compareAndSet(windowStart, nowNanos)) {
+            adjustLimit(samples.getAndSet(0), slowSamples.getAndSet(0), saturated.getAndSet(false));
+        }
+    }
+
+    private void adjustLimit(int total, int slow, boolean wasSaturated) {
+        if (slow > total * SLOW_RATIO_THRESHOLD) {
+            limit.updateAndGet(l -> Math.max(minLimit, (int) (l * DECREASE_RATIO)));
+        } else if (wasSaturated) {
+            // 上限まで使い切っていてもレイテンシが良好なら上限を広げる
+            limit.updateAndGet(l -> Math.min(maxLimit, l + 1));
+        }
+    }
+
+    public int getLimit() {
+        return limit.get();
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
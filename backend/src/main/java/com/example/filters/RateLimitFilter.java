@@ -0,0 +1,177 @@
+package com.example.filters;
+
+import com.example.controllers.TodoServlet;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * クライアントごとのレート制限と、全体の同時実行数制限を行うフィルター
+ * 1つのクライアントがコネクションプールを占有して他のリクエストを待たせないようにする
+ */
+public class RateLimitFilter implements Filter {
+    private static final int SC_TOO_MANY_REQUESTS = 429;
+    private static final String API_KEY_HEADER = "X-API-Key";
+    private static final Map<String, String> TOO_MANY_REQUESTS_BODY = Map.of("error", "Too Many Requests");
+
+    // 参照系と更新系で別々の予算を持たせる
+    private static final double READ_TOKENS_PER_SECOND = 50;
+    static final int READ_BURST = 100;
+    private static final double WRITE_TOKENS_PER_SECOND = 10;
+    static final int WRITE_BURST = 20;
+
+    // 個別にバケットを持てるクライアント数の上限(超えた分は共有のバケットを使う)
+    private static final int MAX_TRACKED_CLIENTS = 10_000;
+    // アクセスのないクライアントのバケットを破棄する間隔
+    private static final long EVICTION_INTERVAL_SECONDS = 10;
+
+    private final ConcurrentHashMap<String, ClientBuckets> buckets = new ConcurrentHashMap<>();
+    private final ClientBuckets overflowBuckets = new ClientBuckets();
+    private final int maxTrackedClients;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final Set<String> apiKeys;
+    private final ObjectMapper objectMapper;
+    private ScheduledExecutorService evictionExecutor;
+
+    /**
+     * @param apiKeys 登録済みのAPIキー(これ以外のキーは無視し、接続元IPで識別する)
+     */
+    public RateLimitFilter(AdaptiveConcurrencyLimiter concurrencyLimiter, Set<String> apiKeys,
+                           ObjectMapper objectMapper) {
+        this(concurrencyLimiter, apiKeys, objectMapper, MAX_TRACKED_CLIENTS);
+    }
+
+    RateLimitFilter(AdaptiveConcurrencyLimiter concurrencyLimiter, Set<String> apiKeys,
+                    ObjectMapper objectMapper, int maxTrackedClients) {
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.apiKeys = Set.copyOf(apiKeys);
+        this.objectMapper = objectMapper;
+        this.maxTrackedClients = maxTrackedClients;
+    }
+
+    @Override
+    public void init(FilterConfig filterConfig) {
+        // バケットの掃除はリクエスト処理のスレッドでは行わない
+        evictionExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "rate-limit-eviction");
+            thread.setDaemon(true);
+            return thread;
+        });
+        evictionExecutor.scheduleWithFixedDelay(() -> evictIdleClients(System.nanoTime()),
+            EVICTION_INTERVAL_SECONDS, EVICTION_INTERVAL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        if (evictionExecutor != null) {
+            evictionExecutor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletRequest req = (HttpServletRequest) request;
+        HttpServletResponse resp = (HttpServletResponse) response;
+
+        // CORSのプリフライトはデータベースに触れないので制限しない
+        if ("OPTIONS".equals(req.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        long now = System.nanoTime();
+        ClientBuckets clientBuckets = getClientBuckets(resolveClientKey(req));
+        TokenBucket bucket = isReadRequest(req) ? clientBuckets.read : clientBuckets.write;
+        long waitNanos = bucket.tryAcquire(now);
+        if (waitNanos > 0) {
+            sendTooManyRequests(resp, waitNanos);
+            return;
+        }
+
+        if (!concurrencyLimiter.tryAcquire()) {
+            sendTooManyRequests(resp, TimeUnit.SECONDS.toNanos(1));
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long end = System.nanoTime();
+            concurrencyLimiter.release(end - start, end);
+        }
+    }
+
+    private boolean isReadRequest(HttpServletRequest req) {
+        String method = req.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
+    /**
+     * 登録済みのAPIキーがあればそれを、なければ接続元IPをクライアントの識別子とする
+     * 未登録のキーを受け付けると、キーを変えるだけで制限を回避できてしまう
+     */
+    private String resolveClientKey(HttpServletRequest req) {
+        String apiKey = req.getHeader(API_KEY_HEADER);
+        if (apiKey != null && apiKeys.contains(apiKey)) {
+            return "key:" + apiKey;
+        }
+        return "ip:" + req.getRemoteAddr();
+    }
+
+    ClientBuckets getClientBuckets(String clientKey) {
+        ClientBuckets clientBuckets = buckets.get(clientKey);
+        if (clientBuckets != null) {
+            return clientBuckets;
+        }
+        if (buckets.size() >= maxTrackedClients) {
+            // 上限に達している間の新しいクライアントは、全員で1つのバケットを共有する
+            return overflowBuckets;
+        }
+        return buckets.computeIfAbsent(clientKey, k -> new ClientBuckets());
+    }
+
+    /**
+     * 満杯のバケットを破棄する
+     * 満杯のバケットは新規作成したものと同じ状態なので、破棄しても制限は緩まない
+     */
+    void evictIdleClients(long now) {
+        buckets.values().removeIf(b -> b.read.isFull(now) && b.write.isFull(now));
+    }
+
+    int getTrackedClientCount() {
+        return buckets.size();
+    }
+
+    private void sendTooManyRequests(HttpServletResponse resp, long waitNanos) throws IOException {
+        long oneSecond = TimeUnit.SECONDS.toNanos(1);
+        long retryAfterSeconds = Math.max(1, (waitNanos + oneSecond - 1) / oneSecond);
+        resp.setStatus(SC_TOO_MANY_REQUESTS);
+        resp.setHeader("Retry-After", Long.toString(retryAfterSeconds));
+        resp.setHeader("Access-Control-Allow-Origin", TodoServlet.ALLOWED_ORIGIN);
+        // ブラウザのスクリプトからRetry-Afterを読めるようにする
+        resp.setHeader("Access-Control-Expose-Headers", "Retry-After");
+        resp.setContentType("application/json");
+        resp.setCharacterEncoding("UTF-8");
+        objectMapper.writeValue(resp.getWriter(), TOO_MANY_REQUESTS_BODY);
+    }
+
+    static final class ClientBuckets {
+        final TokenBucket read = new TokenBucket(READ_TOKENS_PER_SECOND, READ_BURST);
+        final TokenBucket write = new TokenBucket(WRITE_TOKENS_PER_SECOND, WRITE_BURST);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.filters;
+
+import com.example.config.StartupTimer;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+
+import java.io.IOException;
+
+/**
+ * 起動から最初のリクエストを受け付けるまでの時間を記録するフィルター
+ */
+public class StartupTimingFilter implements Filter {
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        StartupTimer.markFirstRequest();
+        chain.doFilter(request, response);
+    }
+}
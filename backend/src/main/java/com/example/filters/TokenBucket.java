@@ -0,0 +1,49 @@
+package com.example.filters;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ロックフリーのトークンバケット
+ * GCRA(Generic Cell Rate Algorithm)で実装し、状態を1つのAtomicLongに収めている
+ */
+public class TokenBucket {
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    // 次のトークンが理論上利用可能になる時刻(TAT)
+    private final AtomicLong theoreticalArrivalTime;
+
+    public TokenBucket(double tokensPerSecond, int capacity) {
+        if (tokensPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("レートと容量は正の値である必要があります");
+        }
+        this.emissionIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / tokensPerSecond);
+        this.burstToleranceNanos = emissionIntervalNanos * capacity;
+        this.theoreticalArrivalTime = new AtomicLong(Long.MIN_VALUE);
+    }
+
+    /**
+     * トークンを1つ消費する
+     * @return 消費できた場合は0、できなかった場合は次に消費可能になるまでのナノ秒
+     */
+    public long tryAcquire(long nowNanos) {
+        while (true) {
+            long tat = theoreticalArrivalTime.get();
+            long newTat = Math.max(tat, nowNanos) + emissionIntervalNanos;
+            long waitNanos = newTat - nowNanos - burstToleranceNanos;
+            if (waitNanos > 0) {
+                return waitNanos;
+            }
+            if (theoreticalArrivalTime.compareAndSet(tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * バケットが満杯(クライアントが一定時間アクセスしていない)かどうか
+     */
+    public boolean isFull(long nowNanos) {
+        return theoreticalArrivalTime.get() <= nowNanos;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.models;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Objects;
 
 public class Todo {
@@ -13,6 +14,11 @@ public class Todo {
     private LocalDateTime dueDate;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
+    // 親TodoのID(サブタスクの場合のみ)
+    private Long parentId;
+    private List<String> tags;
+    // 更新時に親Todoの指定を外す(parentIdのnullは「変更しない」を意味するため)
+    private boolean clearParent;
 
     // デフォルトコンストラクタ
     public Todo() {}
@@ -99,6 +105,31 @@ public class Todo {
         this.updatedAt = updatedAt;
     }
 
+    public Long getParentId() {
+        return parentId;
+    }
+
+    public void setParentId(Long parentId) {
+        this.parentId = parentId;
+    }
+
+    // リクエストでのみ受け取り、レスポンスには含めないのでgetterにはしない
+    public boolean shouldClearParent() {
+        return clearParent;
+    }
+
+    public void setClearParent(boolean clearParent) {
+        this.clearParent = clearParent;
+    }
+
+    public List<String> getTags() {
+        return tags;
+    }
+
+    public void setTags(List<String> tags) {
+        this.tags = tags;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -110,11 +141,13 @@ public class Todo {
                 Objects.equals(description, todo.description) &&
                 Objects.equals(priority, todo.priority) &&
                 Objects.equals(category, todo.category) &&
-                Objects.equals(dueDate, todo.dueDate);
+                Objects.equals(dueDate, todo.dueDate) &&
+                Objects.equals(parentId, todo.parentId) &&
+                Objects.equals(tags, todo.tags);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(id, title, description, priority, category, completed, dueDate);
+        return Objects.hash(id, title, description, priority, category, completed, dueDate, parentId, tags);
     }
 }
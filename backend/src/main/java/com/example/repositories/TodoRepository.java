@@ -4,11 +4,26 @@ import com.example.models.Todo;
 import javax.sql.DataSource;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.function.BiConsumer;
 import java.time.LocalDateTime;
 
 public class TodoRepository {
+    // タグはTodoと同じクエリでまとめて取得し、タグごとに追加のクエリを発行しない
+    private static final String SELECT_TODOS_WITH_TAGS = """
+        SELECT t.*, GROUP_CONCAT(g.name, ',') AS tag_names
+        FROM todos t
+        LEFT JOIN todo_tags tt ON tt.todo_id = t.id
+        LEFT JOIN tags g ON g.id = tt.tag_id
+        """;
+    private static final String TAG_SEPARATOR = ",";
+    // IN句に渡すプレースホルダの上限
+    private static final int MAX_IDS_PER_QUERY = 500;
+
     private final DataSource dataSource;
 
     public TodoRepository(DataSource dataSource) {
@@ -17,7 +32,7 @@ public class TodoRepository {
 
     public List<Todo> findAll() {
         List<Todo> todos = new ArrayList<>();
-        String sql = "SELECT * FROM todos ORDER BY created_at DESC";
+        String sql = SELECT_TODOS_WITH_TAGS + "GROUP BY t.id ORDER BY t.created_at DESC";
 
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql);
@@ -34,7 +49,7 @@ public class TodoRepository {
     }
 
     public Optional<Todo> findById(Long id) {
-        String sql = "SELECT * FROM todos WHERE id = ?";
+        String sql = SELECT_TODOS_WITH_TAGS + "WHERE t.id = ? GROUP BY t.id";
 
         try (Connection conn = dataSource.getConnection();
              PreparedStatement stmt = conn.prepareStatement(sql)) {
@@ -53,6 +68,163 @@ public class TodoRepository {
         return Optional.empty();
     }
 
+    /**
+     * 指定したIDのTodoを取得する
+     * 結果は引数のIDの順に並べ替えず、IDの降順で返す
+     */
+    public List<Todo> findByIds(List<Long> ids) {
+        List<Todo> todos = new ArrayList<>(ids.size());
+        if (ids.isEmpty()) {
+            return todos;
+        }
+
+        try (Connection conn = dataSource.getConnection()) {
+            for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+                List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_QUERY));
+                String sql = SELECT_TODOS_WITH_TAGS
+                    + "WHERE t.id IN (" + placeholders(chunk.size()) + ") GROUP BY t.id ORDER BY t.id DESC";
+                try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        stmt.setLong(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            todos.add(mapResultSetToTodo(rs));
+                        }
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Todoの取得に失敗しました", e);
+        }
+
+        todos.sort((a, b) -> Long.compare(b.getId(), a.getId()));
+        return todos;
+    }
+
+    /**
+     * 指定した全てのタグを持つTodoをIDの降順で取得する
+     * タグ索引の読み込みが終わるまでの代替で、idx_todo_tags_tag_idを使って絞り込む
+     * @param tags 重複のないタグ
+     * @param beforeId このIDより小さいTodoだけを取得する(nullなら先頭から)
+     * @param limit 取得する最大件数
+     */
+    public List<Todo> findByTags(List<String> tags, Long beforeId, int limit) {
+        List<Todo> todos = new ArrayList<>();
+        if (tags.isEmpty() || limit <= 0) {
+            return todos;
+        }
+        String sql = SELECT_TODOS_WITH_TAGS + """
+            WHERE t.id IN (
+                SELECT tt.todo_id
+                FROM todo_tags tt
+                JOIN tags g ON g.id = tt.tag_id
+                WHERE g.name IN (%s)
+                GROUP BY tt.todo_id
+                HAVING COUNT(*) = ?
+            )
+            AND t.id < ?
+            GROUP BY t.id ORDER BY t.id DESC
+            LIMIT ?
+            """.formatted(placeholders(tags.size()));
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < tags.size(); i++) {
+                stmt.setString(i + 1, tags.get(i));
+            }
+            stmt.setInt(tags.size() + 1, tags.size());
+            stmt.setLong(tags.size() + 2, beforeId != null ? beforeId : Long.MAX_VALUE);
+            stmt.setInt(tags.size() + 3, limit);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    todos.add(mapResultSetToTodo(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Todoの取得に失敗しました", e);
+        }
+
+        return todos;
+    }
+
+    /**
+     * 指定したTodoの直下のサブタスクを取得する
+     */
+    public List<Todo> findByParentId(Long parentId) {
+        List<Todo> todos = new ArrayList<>();
+        String sql = SELECT_TODOS_WITH_TAGS + "WHERE t.parent_id = ? GROUP BY t.id ORDER BY t.created_at DESC";
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setLong(1, parentId);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    todos.add(mapResultSetToTodo(rs));
+                }
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("サブタスクの取得に失敗しました", e);
+        }
+
+        return todos;
+    }
+
+    /**
+     * 指定したTodoを根とするサブタスクの階層数(サブタスクがなければ1)を返す
+     * @param maxHeight これより深い階層はたどらない
+     */
+    public int findSubtreeHeight(Long id, int maxHeight) {
+        String sql = """
+            WITH RECURSIVE subtree(id, height) AS (
+                SELECT ?, 1
+                UNION ALL
+                SELECT t.id, s.height + 1 FROM todos t JOIN subtree s ON t.parent_id = s.id
+                WHERE s.height < ?
+            )
+            SELECT MAX(height) FROM subtree
+        """;
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql)) {
+
+            stmt.setLong(1, id);
+            stmt.setInt(2, maxHeight);
+
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 1;
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("サブタスクの取得に失敗しました", e);
+        }
+    }
+
+    /**
+     * 全てのTodoとタグの組を読み出す(タグ索引の構築用)
+     */
+    public void forEachTagLink(BiConsumer<Long, String> consumer) {
+        String sql = """
+            SELECT tt.todo_id, g.name
+            FROM todo_tags tt
+            JOIN tags g ON g.id = tt.tag_id
+        """;
+
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+
+            while (rs.next()) {
+                consumer.accept(rs.getLong(1), rs.getString(2));
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("タグの取得に失敗しました", e);
+        }
+    }
+
     public Todo save(Todo todo) {
         if (todo.getId() == null) {
             return insert(todo);
@@ -63,26 +235,30 @@ public class TodoRepository {
 
     private Todo insert(Todo todo) {
         String sql = """
-            INSERT INTO todos (title, description, priority, category, completed, due_date)
-            VALUES (?, ?, ?, ?, ?, ?);
+            INSERT INTO todos (title, description, priority, category, completed, due_date, parent_id)
+            VALUES (?, ?, ?, ?, ?, ?, ?);
         """;
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                setTodoParameters(stmt, todo);
+                stmt.executeUpdate();
 
-            setTodoParameters(stmt, todo);
-            stmt.executeUpdate();
-
-            // SQLiteの場合、last_insert_rowid()で最後に挿入された行のIDを取得
-            try (Statement idStmt = conn.createStatement();
-                 ResultSet rs = idStmt.executeQuery("SELECT last_insert_rowid()")) {
-                if (rs.next()) {
-                    todo.setId(rs.getLong(1));
-                    return findById(todo.getId()).orElseThrow();
-                } else {
-                    throw new SQLException("Todoの作成に失敗しました、IDが生成されませんでした");
+                // SQLiteの場合、last_insert_rowid()で最後に挿入された行のIDを取得
+                todo.setId(lastInsertRowId(conn));
+                if (todo.getTags() != null) {
+                    linkTags(conn, Map.of(todo.getId(), todo.getTags()));
                 }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
+            return findById(todo.getId()).orElseThrow();
         } catch (SQLException e) {
             throw new RuntimeException("Todoの保存に失敗しました", e);
         }
@@ -92,27 +268,110 @@ public class TodoRepository {
         String sql = """
             UPDATE todos 
             SET title = ?, description = ?, priority = ?, category = ?, 
-                completed = ?, due_date = ?, updated_at = CURRENT_TIMESTAMP
+                completed = ?, due_date = ?, parent_id = ?, updated_at = CURRENT_TIMESTAMP
             WHERE id = ?
         """;
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                setTodoParameters(stmt, todo);
+                stmt.setLong(8, todo.getId());
 
-            setTodoParameters(stmt, todo);
-            stmt.setLong(7, todo.getId());
+                int affectedRows = stmt.executeUpdate();
+                if (affectedRows == 0) {
+                    throw new SQLException("Todoの更新に失敗しました、該当するIDが見つかりません");
+                }
 
-            int affectedRows = stmt.executeUpdate();
-            if (affectedRows == 0) {
-                throw new SQLException("Todoの更新に失敗しました、該当するIDが見つかりません");
+                // タグの指定がない場合は既存のタグをそのまま残す
+                if (todo.getTags() != null) {
+                    try (PreparedStatement deleteStmt = conn.prepareStatement(
+                            "DELETE FROM todo_tags WHERE todo_id = ?")) {
+                        deleteStmt.setLong(1, todo.getId());
+                        deleteStmt.executeUpdate();
+                    }
+                    linkTags(conn, Map.of(todo.getId(), todo.getTags()));
+                }
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
             }
-
             return findById(todo.getId()).orElseThrow();
         } catch (SQLException e) {
             throw new RuntimeException("Todoの更新に失敗しました", e);
         }
     }
 
+    /**
+     * 複数のTodoを1トランザクションでまとめて登録する
+     * 大量データの投入用で、生成されたIDや日時は引数のTodoに反映しない
+     * @return 登録した件数
+     */
+    public int insertAll(List<Todo> todos) {
+        String sql = """
+            INSERT INTO todos (title, description, priority, category, completed, due_date, parent_id)
+            VALUES (?, ?, ?, ?, ?, ?, ?);
+        """;
+
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+                for (Todo todo : todos) {
+                    setTodoParameters(stmt, todo);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+
+                // トランザクション内では書き込みが直列化されるため、IDは連番で払い出される
+                long firstId = lastInsertRowId(conn) - todos.size() + 1;
+                Map<Long, List<String>> tagsByTodoId = new LinkedHashMap<>();
+                for (int i = 0; i < todos.size(); i++) {
+                    List<String> tags = todos.get(i).getTags();
+                    if (tags != null && !tags.isEmpty()) {
+                        tagsByTodoId.put(firstId + i, tags);
+                    }
+                }
+                linkTags(conn, tagsByTodoId);
+                conn.commit();
+                return todos.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new RuntimeException("Todoの一括登録に失敗しました", e);
+        }
+    }
+
+    public long count() {
+        String sql = "SELECT COUNT(*) FROM todos";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new RuntimeException("Todoの件数取得に失敗しました", e);
+        }
+    }
+
+    public long findMaxId() {
+        String sql = "SELECT COALESCE(MAX(id), 0) FROM todos";
+        try (Connection conn = dataSource.getConnection();
+             PreparedStatement stmt = conn.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        } catch (SQLException e) {
+            throw new RuntimeException("TodoのID取得に失敗しました", e);
+        }
+    }
+
     public boolean existsById(Long id) {
         String sql = "SELECT COUNT(*) FROM todos WHERE id = ?";
         try (Connection conn = dataSource.getConnection();
@@ -126,19 +385,106 @@ public class TodoRepository {
         }
     }
 
-    public void deleteById(Long id) {
-        String sql = "DELETE FROM todos WHERE id = ?";
+    /**
+     * Todoをサブタスクとタグの関連ごと削除する
+     * @return 削除したTodo(サブタスクを含む)のID
+     */
+    public List<Long> deleteById(Long id) {
+        String subtreeSql = """
+            WITH RECURSIVE subtree(id) AS (
+                SELECT ?
+                UNION
+                SELECT t.id FROM todos t JOIN subtree s ON t.parent_id = s.id
+            )
+            SELECT id FROM subtree
+        """;
 
-        try (Connection conn = dataSource.getConnection();
-             PreparedStatement stmt = conn.prepareStatement(sql)) {
+        try (Connection conn = dataSource.getConnection()) {
+            boolean autoCommit = conn.getAutoCommit();
+            conn.setAutoCommit(false);
+            try {
+                List<Long> ids = new ArrayList<>();
+                try (PreparedStatement stmt = conn.prepareStatement(subtreeSql)) {
+                    stmt.setLong(1, id);
+                    try (ResultSet rs = stmt.executeQuery()) {
+                        while (rs.next()) {
+                            ids.add(rs.getLong(1));
+                        }
+                    }
+                }
 
-            stmt.setLong(1, id);
-            stmt.executeUpdate();
+                for (int from = 0; from < ids.size(); from += MAX_IDS_PER_QUERY) {
+                    List<Long> chunk = ids.subList(from, Math.min(ids.size(), from + MAX_IDS_PER_QUERY));
+                    String in = "(" + placeholders(chunk.size()) + ")";
+                    executeWithIds(conn, "DELETE FROM todo_tags WHERE todo_id IN " + in, chunk);
+                    executeWithIds(conn, "DELETE FROM todos WHERE id IN " + in, chunk);
+                }
+                conn.commit();
+                return ids;
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            } finally {
+                conn.setAutoCommit(autoCommit);
+            }
         } catch (SQLException e) {
             throw new RuntimeException("Todoの削除に失敗しました", e);
         }
     }
 
+    /**
+     * タグを(未登録なら作成して)Todoに関連付ける
+     */
+    private void linkTags(Connection conn, Map<Long, List<String>> tagsByTodoId) throws SQLException {
+        if (tagsByTodoId.isEmpty()) {
+            return;
+        }
+        try (PreparedStatement tagStmt = conn.prepareStatement(
+                 "INSERT OR IGNORE INTO tags (name) VALUES (?)");
+             PreparedStatement linkStmt = conn.prepareStatement(
+                 "INSERT OR IGNORE INTO todo_tags (todo_id, tag_id) SELECT ?, id FROM tags WHERE name = ?")) {
+            for (List<String> tags : tagsByTodoId.values()) {
+                for (String tag : tags) {
+                    tagStmt.setString(1, tag);
+                    tagStmt.addBatch();
+                }
+            }
+            tagStmt.executeBatch();
+
+            for (Map.Entry<Long, List<String>> entry : tagsByTodoId.entrySet()) {
+                for (String tag : entry.getValue()) {
+                    linkStmt.setLong(1, entry.getKey());
+                    linkStmt.setString(2, tag);
+                    linkStmt.addBatch();
+                }
+            }
+            linkStmt.executeBatch();
+        }
+    }
+
+    private long lastInsertRowId(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT last_insert_rowid()")) {
+            if (rs.next()) {
+                return rs.getLong(1);
+            }
+            throw new SQLException("Todoの作成に失敗しました、IDが生成されませんでした");
+        }
+    }
+
+    private void executeWithIds(Connection conn, String sql, List<Long> ids) throws SQLException {
+        try (PreparedStatement stmt = conn.prepareStatement(sql)) {
+            for (int i = 0; i < ids.size(); i++) {
+                stmt.setLong(i + 1, ids.get(i));
+            }
+            stmt.executeUpdate();
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
     private void setTodoParameters(PreparedStatement stmt, Todo todo) throws SQLException {
         stmt.setString(1, todo.getTitle());
         stmt.setString(2, todo.getDescription());
@@ -150,6 +496,11 @@ public class TodoRepository {
         } else {
             stmt.setNull(6, Types.TIMESTAMP);
         }
+        if (todo.getParentId() != null) {
+            stmt.setLong(7, todo.getParentId());
+        } else {
+            stmt.setNull(7, Types.INTEGER);
+        }
     }
 
     private Todo mapResultSetToTodo(ResultSet rs) throws SQLException {
@@ -175,6 +526,14 @@ public class TodoRepository {
         if (updatedAt != null) {
             todo.setUpdatedAt(updatedAt.toLocalDateTime());
         }
+
+        long parentId = rs.getLong("parent_id");
+        if (!rs.wasNull()) {
+            todo.setParentId(parentId);
+        }
+
+        String tagNames = rs.getString("tag_names");
+        todo.setTags(tagNames != null ? List.of(tagNames.split(TAG_SEPARATOR)) : List.of());
         
         return todo;
     }
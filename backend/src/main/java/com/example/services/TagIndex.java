@@ -0,0 +1,183 @@
+package com.example.services;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * タグごとに、そのタグを持つTodoのIDを保持するメモリ上の索引
+ * IDの集合は件数に応じて配列とビットマップを使い分けるので(TodoIdSet)、
+ * 少数のTodoにしか付いていないタグでもメモリは件数に比例する
+ * 複数タグでの絞り込みは、最も件数の少ないタグのIDを順に他のタグと照合して行う
+ *
+ * 起動時はデータベースからの読み込みをバックグラウンドで行い、markReady()が呼ばれるまでは
+ * isReady()がfalseを返す(その間の検索は呼び出し側でデータベースに問い合わせる)
+ */
+public class TagIndex {
+    private final Map<String, TodoIdSet> todoIdsByTag = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // 読み込み中に更新されたTodoのID(読み込み完了後はnull)
+    private BitSet updatedWhileLoading = new BitSet();
+    private volatile boolean ready;
+
+    /**
+     * データベースから読み込んだタグを追加する
+     * 読み込み中に更新・削除されたTodoは、読み込んだ内容が古い可能性があるので無視する
+     */
+    public void add(long todoId, String tag) {
+        int index = toIndex(todoId);
+        lock.writeLock().lock();
+        try {
+            if (updatedWhileLoading != null && updatedWhileLoading.get(index)) {
+                return;
+            }
+            todoIdsByTag.computeIfAbsent(tag, t -> new TodoIdSet()).add(index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 読み込みの完了を記録し、索引での検索を有効にする
+     */
+    public void markReady() {
+        lock.writeLock().lock();
+        try {
+            updatedWhileLoading = null;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * Todoのタグを、コミット済みのタグで置き換える
+     * 以前のタグを呼び出し側から受け取らず、全てのタグから外してから付け直す
+     */
+    public void replace(long todoId, Collection<String> tags) {
+        int index = toIndex(todoId);
+        lock.writeLock().lock();
+        try {
+            markUpdated(index);
+            removeFromAllTags(List.of(index));
+            if (tags != null) {
+                for (String tag : tags) {
+                    todoIdsByTag.computeIfAbsent(tag, t -> new TodoIdSet()).add(index);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 削除されたTodoを索引から取り除く
+     */
+    public void removeAll(Collection<Long> todoIds) {
+        lock.writeLock().lock();
+        try {
+            List<Integer> indexes = new ArrayList<>(todoIds.size());
+            for (Long todoId : todoIds) {
+                int index = toIndex(todoId);
+                markUpdated(index);
+                indexes.add(index);
+            }
+            removeFromAllTags(indexes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 指定した全てのタグを持つTodoのIDを降順で返す
+     * @param beforeId このIDより小さいIDだけを返す(nullなら先頭から)
+     * @param limit 返すIDの最大件数
+     */
+    public List<Long> findTodoIdsWithAllTags(Collection<String> tags, Long beforeId, int limit) {
+        List<Long> ids = new ArrayList<>();
+        if (tags.isEmpty() || limit <= 0 || (beforeId != null && beforeId <= 0)) {
+            return ids;
+        }
+        int start = beforeId == null ? Integer.MAX_VALUE : (int) Math.min(beforeId - 1, Integer.MAX_VALUE);
+        lock.readLock().lock();
+        try {
+            // 最も件数の少ないタグを起点に、他の全てのタグに含まれるIDだけを残す
+            List<TodoIdSet> sets = new ArrayList<>(tags.size());
+            for (String tag : tags) {
+                TodoIdSet todoIds = todoIdsByTag.get(tag);
+                if (todoIds == null) {
+                    return ids;
+                }
+                sets.add(todoIds);
+            }
+            sets.sort((a, b) -> Integer.compare(a.size(), b.size()));
+            TodoIdSet smallest = sets.get(0);
+
+            for (int id = smallest.previous(start); id >= 0 && ids.size() < limit; id = smallest.previous(id - 1)) {
+                if (containsInAll(sets, id)) {
+                    ids.add((long) id);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return ids;
+    }
+
+    private static boolean containsInAll(List<TodoIdSet> sets, int id) {
+        for (int i = 1; i < sets.size(); i++) {
+            if (!sets.get(i).contains(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 全てのタグからIDを取り除き、空になったタグは索引から削除する
+     */
+    // 書き込みロックを取得した状態で呼び出す
+    private void removeFromAllTags(List<Integer> indexes) {
+        Iterator<TodoIdSet> iterator = todoIdsByTag.values().iterator();
+        while (iterator.hasNext()) {
+            TodoIdSet todoIds = iterator.next();
+            for (int index : indexes) {
+                todoIds.remove(index);
+            }
+            if (todoIds.isEmpty()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    // テスト用
+    int getTagCount() {
+        lock.readLock().lock();
+        try {
+            return todoIdsByTag.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // 書き込みロックを取得した状態で呼び出す
+    private void markUpdated(int index) {
+        if (updatedWhileLoading != null) {
+            updatedWhileLoading.set(index);
+        }
+    }
+
+    private static int toIndex(long todoId) {
+        return Math.toIntExact(todoId);
+    }
+}
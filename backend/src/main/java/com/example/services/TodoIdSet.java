@@ -0,0 +1,139 @@
+package com.example.services;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * TagIndexで1つのタグを持つTodoのIDを保持する集合
+ * 件数が少ない間はソート済みのint配列、多くなったらBitSetで保持する
+ * BitSetは最大のIDに比例した大きさになるため、少数のTodoにしか付いていないタグに使うと
+ * IDが大きいほどメモリを無駄にする(100万件目のIDなら1件でも約125KB)
+ * スレッドセーフではないので、TagIndexのロックの内側で使う
+ */
+class TodoIdSet {
+    // これを超えたらBitSetに切り替え、半分を下回ったら配列に戻す
+    static final int ARRAY_MAX_SIZE = 4096;
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] sortedIds = new int[INITIAL_CAPACITY];
+    private BitSet bits;
+    private int size;
+
+    /**
+     * @return 追加された場合はtrue(既に含まれていた場合はfalse)
+     */
+    boolean add(int id) {
+        if (bits != null) {
+            if (bits.get(id)) {
+                return false;
+            }
+            bits.set(id);
+            size++;
+            return true;
+        }
+
+        int position = Arrays.binarySearch(sortedIds, 0, size, id);
+        if (position >= 0) {
+            return false;
+        }
+        int insertAt = -position - 1;
+        if (size == sortedIds.length) {
+            sortedIds = Arrays.copyOf(sortedIds, size * 2);
+        }
+        System.arraycopy(sortedIds, insertAt, sortedIds, insertAt + 1, size - insertAt);
+        sortedIds[insertAt] = id;
+        size++;
+
+        if (size > ARRAY_MAX_SIZE) {
+            toBitSet();
+        }
+        return true;
+    }
+
+    /**
+     * @return 削除された場合はtrue(含まれていなかった場合はfalse)
+     */
+    boolean remove(int id) {
+        if (bits != null) {
+            if (!bits.get(id)) {
+                return false;
+            }
+            bits.clear(id);
+            size--;
+            if (size < ARRAY_MAX_SIZE / 2) {
+                toArray();
+            }
+            return true;
+        }
+
+        int position = Arrays.binarySearch(sortedIds, 0, size, id);
+        if (position < 0) {
+            return false;
+        }
+        System.arraycopy(sortedIds, position + 1, sortedIds, position, size - position - 1);
+        size--;
+        // 大量に削除された場合は配列を縮める
+        if (sortedIds.length > INITIAL_CAPACITY && size < sortedIds.length / 4) {
+            sortedIds = Arrays.copyOf(sortedIds, Math.max(INITIAL_CAPACITY, size * 2));
+        }
+        return true;
+    }
+
+    boolean contains(int id) {
+        if (bits != null) {
+            return bits.get(id);
+        }
+        return Arrays.binarySearch(sortedIds, 0, size, id) >= 0;
+    }
+
+    /**
+     * 指定したID以下で最大のIDを返す
+     * @return 該当するIDがなければ-1
+     */
+    int previous(int fromInclusive) {
+        if (fromInclusive < 0) {
+            return -1;
+        }
+        if (bits != null) {
+            return bits.previousSetBit(fromInclusive);
+        }
+        int position = Arrays.binarySearch(sortedIds, 0, size, fromInclusive);
+        if (position >= 0) {
+            return sortedIds[position];
+        }
+        int lower = -position - 2;
+        return lower >= 0 ? sortedIds[lower] : -1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    // テスト用
+    boolean isBitmap() {
+        return bits != null;
+    }
+
+    private void toBitSet() {
+        BitSet converted = new BitSet(sortedIds[size - 1] + 1);
+        for (int i = 0; i < size; i++) {
+            converted.set(sortedIds[i]);
+        }
+        bits = converted;
+        sortedIds = null;
+    }
+
+    private void toArray() {
+        int[] converted = new int[Math.max(INITIAL_CAPACITY, size * 2)];
+        int i = 0;
+        for (int id = bits.nextSetBit(0); id >= 0; id = bits.nextSetBit(id + 1)) {
+            converted[i++] = id;
+        }
+        sortedIds = converted;
+        bits = null;
+    }
+}
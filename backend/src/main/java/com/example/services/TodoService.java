@@ -8,19 +8,57 @@ import com.example.repositories.TodoRepository;
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class TodoService {
     private final TodoRepository todoRepository;
+    private final TagIndex tagIndex;
 
     private static final List<String> VALID_PRIORITIES = List.of("low", "medium", "high");
     private static final List<String> VALID_CATEGORIES = List.of("none", "work", "personal", "shopping", "study");
     private static final int MAX_TITLE_LENGTH = 100;
     private static final int MAX_DESCRIPTION_LENGTH = 500;
+    private static final int MAX_TAGS = 20;
+    private static final int MAX_TAG_LENGTH = 30;
+    private static final int MAX_SUBTASK_DEPTH = 10;
+    // Todoごとの更新を直列化するロックの数(IDで振り分ける)
+    private static final int LOCK_STRIPES = 64;
 
-    public TodoService(TodoRepository todoRepository) {
+    // エラーメッセージは固定なので事前に組み立てておく
+    private static final String TITLE_REQUIRED_MESSAGE = "タイトルは必須です";
+    private static final String TITLE_TOO_LONG_MESSAGE =
+        String.format("タイトルは%d文字以内で入力してください", MAX_TITLE_LENGTH);
+    private static final String DESCRIPTION_TOO_LONG_MESSAGE =
+        String.format("説明は%d文字以内で入力してください", MAX_DESCRIPTION_LENGTH);
+    private static final String INVALID_PRIORITY_MESSAGE =
+        "優先度は以下のいずれかを選択してください: " + String.join(", ", VALID_PRIORITIES);
+    private static final String INVALID_CATEGORY_MESSAGE =
+        "カテゴリーは以下のいずれかを選択してください: " + String.join(", ", VALID_CATEGORIES);
+    private static final String TOO_MANY_TAGS_MESSAGE =
+        String.format("タグは%d個以内で指定してください", MAX_TAGS);
+    private static final String INVALID_TAG_MESSAGE =
+        String.format("タグは%d文字以内で、カンマを含めずに入力してください", MAX_TAG_LENGTH);
+    private static final String PARENT_NOT_FOUND_MESSAGE = "親Todoが存在しません";
+    private static final String INVALID_PARENT_MESSAGE = "自身またはそのサブタスクを親Todoに指定することはできません";
+    private static final String SUBTASK_TOO_DEEP_MESSAGE =
+        String.format("サブタスクの階層は%d段以内にしてください", MAX_SUBTASK_DEPTH);
+
+    // データベースへの書き込みとタグ索引の更新を、同じTodoについて同じ順序で行うためのロック
+    private final ReentrantLock[] todoLocks = new ReentrantLock[LOCK_STRIPES];
+    // 親の付け替えは別のTodoの祖先の検証結果を変えるので、全体で直列化する
+    // (Todoごとのロックを取得した後に取得する)
+    private final ReentrantLock parentChangeLock = new ReentrantLock();
+
+    public TodoService(TodoRepository todoRepository, TagIndex tagIndex) {
         this.todoRepository = todoRepository;
+        this.tagIndex = tagIndex;
+        for (int i = 0; i < LOCK_STRIPES; i++) {
+            todoLocks[i] = new ReentrantLock();
+        }
     }
 
     /**
@@ -37,42 +75,122 @@ public class TodoService {
         return todoRepository.findById(id);
     }
 
+    /**
+     * 指定した全てのタグを持つTodoを、IDの降順で1ページ分取得
+     * @param cursor 前のページの最後のID(このIDより小さいTodoを返す、nullなら先頭から)
+     * @param limit 1ページの最大件数
+     */
+    public List<Todo> getTodosByTags(List<String> tags, Long cursor, int limit) {
+        List<String> distinctTags = List.copyOf(new LinkedHashSet<>(tags));
+        if (!tagIndex.isReady()) {
+            // 起動直後で索引を読み込み中の間はデータベースで絞り込む
+            return todoRepository.findByTags(distinctTags, cursor, limit);
+        }
+        return todoRepository.findByIds(tagIndex.findTodoIdsWithAllTags(distinctTags, cursor, limit));
+    }
+
+    /**
+     * 直下のサブタスクを取得
+     */
+    public List<Todo> getSubtasks(Long id) {
+        if (!todoRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Todo", "id", id);
+        }
+        return todoRepository.findByParentId(id);
+    }
+
     /**
      * 新規Todoを作成
      */
     public Todo createTodo(Todo todo) {
-        List<String> validationErrors = validateTodo(todo);
-        if (!validationErrors.isEmpty()) {
-            throw new ValidationException("Todoの検証に失敗しました", validationErrors);
+        todo.setTags(normalizeTags(todo.getTags()));
+        boolean hasParent = todo.getParentId() != null;
+        Todo createdTodo;
+        if (hasParent) {
+            parentChangeLock.lock();
         }
-        return todoRepository.save(todo);
+        try {
+            List<String> validationErrors = validateTodo(todo, true);
+            if (!validationErrors.isEmpty()) {
+                throw new ValidationException("Todoの検証に失敗しました", validationErrors);
+            }
+            createdTodo = todoRepository.save(todo);
+        } finally {
+            if (hasParent) {
+                parentChangeLock.unlock();
+            }
+        }
+
+        // 作成直後のTodoが別のリクエストで更新されている可能性があるので、コミット済みのタグを読み直す
+        ReentrantLock lock = lockFor(createdTodo.getId());
+        lock.lock();
+        try {
+            todoRepository.findById(createdTodo.getId())
+                .ifPresent(committed -> tagIndex.replace(committed.getId(), committed.getTags()));
+        } finally {
+            lock.unlock();
+        }
+        return createdTodo;
     }
 
     /**
      * Todoを更新
      */
     public Todo updateTodo(Todo updates) {
-        Todo existingTodo = todoRepository.findById(updates.getId())
-            .orElseThrow(() -> new ResourceNotFoundException("Todo", "id", updates.getId()));
+        ReentrantLock lock = lockFor(updates.getId());
+        lock.lock();
+        try {
+            Todo existingTodo = todoRepository.findById(updates.getId())
+                .orElseThrow(() -> new ResourceNotFoundException("Todo", "id", updates.getId()));
+            Long oldParentId = existingTodo.getParentId();
 
-        updateTodoFields(existingTodo, updates);
-        
-        List<String> validationErrors = validateTodo(existingTodo);
-        if (!validationErrors.isEmpty()) {
-            throw new ValidationException("更新されたTodoの検証に失敗しました", validationErrors);
-        }
+            updateTodoFields(existingTodo, updates);
+
+            // 親Todoの検証は祖先をたどるため、親が変わった場合のみ行う
+            boolean parentChanged = !Objects.equals(oldParentId, existingTodo.getParentId());
+            // 親を外すだけなら循環も階層超過も起きないので、全体のロックは不要
+            boolean lockParents = parentChanged && existingTodo.getParentId() != null;
+            if (lockParents) {
+                parentChangeLock.lock();
+            }
+            try {
+                List<String> validationErrors = validateTodo(existingTodo, parentChanged);
+                if (!validationErrors.isEmpty()) {
+                    throw new ValidationException("更新されたTodoの検証に失敗しました", validationErrors);
+                }
 
-        return todoRepository.save(existingTodo);
+                Todo updatedTodo = todoRepository.save(existingTodo);
+                tagIndex.replace(updatedTodo.getId(), updatedTodo.getTags());
+                return updatedTodo;
+            } finally {
+                if (lockParents) {
+                    parentChangeLock.unlock();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
     }
 
     /**
-     * Todoを削除
+     * Todoをサブタスクごと削除
      */
     public void deleteTodo(Long id) {
-        if (!todoRepository.existsById(id)) {
-            throw new ResourceNotFoundException("Todo", "id", id);
+        ReentrantLock lock = lockFor(id);
+        lock.lock();
+        try {
+            if (!todoRepository.existsById(id)) {
+                throw new ResourceNotFoundException("Todo", "id", id);
+            }
+            // 削除後に索引へ残ったIDがあっても、検索結果はデータベースから取得するので表示されない
+            tagIndex.removeAll(todoRepository.deleteById(id));
+        } finally {
+            lock.unlock();
         }
-        todoRepository.deleteById(id);
+    }
+
+    private ReentrantLock lockFor(Long id) {
+        return todoLocks[Math.floorMod(Long.hashCode(id), LOCK_STRIPES)];
     }
 
     /**
@@ -94,38 +212,146 @@ public class TodoService {
         if (updates.getDueDate() != null) {
             existingTodo.setDueDate(updates.getDueDate());
         }
+        if (updates.shouldClearParent()) {
+            existingTodo.setParentId(null);
+        } else if (updates.getParentId() != null) {
+            existingTodo.setParentId(updates.getParentId());
+        }
+        if (updates.getTags() != null) {
+            existingTodo.setTags(normalizeTags(updates.getTags()));
+        }
         existingTodo.setCompleted(updates.isCompleted());
     }
 
+    /**
+     * タグの前後の空白を取り除き、重複を除く
+     */
+    private static List<String> normalizeTags(List<String> tags) {
+        if (tags == null) {
+            return null;
+        }
+        List<String> normalized = new ArrayList<>(tags.size());
+        for (String tag : tags) {
+            String trimmed = tag != null ? tag.trim() : null;
+            if (!normalized.contains(trimmed)) {
+                normalized.add(trimmed);
+            }
+        }
+        return normalized;
+    }
+
     /**
      * Todoのバリデーション
+     * 成功時は空の不変リストを返し、エラーがあった場合のみリストを生成する
+     * @param checkParent 親Todoを検証するかどうか
      * @return バリデーションエラーのリスト
      */
-    private List<String> validateTodo(Todo todo) {
-        List<String> errors = new ArrayList<>();
+    // ベンチマーク(src/jmh)から呼び出すためパッケージプライベートにしている
+    List<String> validateTodo(Todo todo, boolean checkParent) {
+        List<String> errors = null;
 
         // タイトルのバリデーション
-        if (todo.getTitle() == null || todo.getTitle().trim().isEmpty()) {
-            errors.add("タイトルは必須です");
-        } else if (todo.getTitle().length() > MAX_TITLE_LENGTH) {
-            errors.add(String.format("タイトルは%d文字以内で入力してください", MAX_TITLE_LENGTH));
+        String title = todo.getTitle();
+        if (title == null || isBlank(title)) {
+            errors = addError(errors, TITLE_REQUIRED_MESSAGE);
+        } else if (title.length() > MAX_TITLE_LENGTH) {
+            errors = addError(errors, TITLE_TOO_LONG_MESSAGE);
         }
 
         // 説明のバリデーション
-        if (todo.getDescription() != null && todo.getDescription().length() > MAX_DESCRIPTION_LENGTH) {
-            errors.add(String.format("説明は%d文字以内で入力してください", MAX_DESCRIPTION_LENGTH));
+        String description = todo.getDescription();
+        if (description != null && description.length() > MAX_DESCRIPTION_LENGTH) {
+            errors = addError(errors, DESCRIPTION_TOO_LONG_MESSAGE);
         }
 
         // 優先度のバリデーション
-        if (todo.getPriority() == null || !VALID_PRIORITIES.contains(todo.getPriority())) {
-            errors.add("優先度は以下のいずれかを選択してください: " + String.join(", ", VALID_PRIORITIES));
+        String priority = todo.getPriority();
+        if (priority == null || !VALID_PRIORITIES.contains(priority)) {
+            errors = addError(errors, INVALID_PRIORITY_MESSAGE);
         }
 
         // カテゴリーのバリデーション
-        if (todo.getCategory() == null || !VALID_CATEGORIES.contains(todo.getCategory())) {
-            errors.add("カテゴリーは以下のいずれかを選択してください: " + String.join(", ", VALID_CATEGORIES));
+        String category = todo.getCategory();
+        if (category == null || !VALID_CATEGORIES.contains(category)) {
+            errors = addError(errors, INVALID_CATEGORY_MESSAGE);
+        }
+
+        // タグのバリデーション
+        List<String> tags = todo.getTags();
+        if (tags != null) {
+            if (tags.size() > MAX_TAGS) {
+                errors = addError(errors, TOO_MANY_TAGS_MESSAGE);
+            }
+            for (String tag : tags) {
+                if (tag == null || isBlank(tag) || tag.length() > MAX_TAG_LENGTH || tag.indexOf(',') >= 0) {
+                    errors = addError(errors, INVALID_TAG_MESSAGE);
+                    break;
+                }
+            }
+        }
+
+        // 親Todoのバリデーション
+        if (checkParent && todo.getParentId() != null) {
+            String parentError = validateParent(todo);
+            if (parentError != null) {
+                errors = addError(errors, parentError);
+            }
+        }
+
+        return errors != null ? errors : List.of();
+    }
+
+    /**
+     * 親Todoを祖先に向かってたどり、存在すること・循環しないこと・深すぎないことを確認する
+     * 階層数には、移動するTodo自身が持つサブタスクの階層も含める
+     * @return エラーメッセージ(問題がなければnull)
+     */
+    private String validateParent(Todo todo) {
+        int subtreeHeight = todo.getId() == null
+            ? 1
+            : todoRepository.findSubtreeHeight(todo.getId(), MAX_SUBTASK_DEPTH + 1);
+        int maxAncestors = MAX_SUBTASK_DEPTH - (subtreeHeight - 1);
+        if (maxAncestors < 1) {
+            return SUBTASK_TOO_DEEP_MESSAGE;
         }
 
+        Long ancestorId = todo.getParentId();
+        int depth = 1;
+        while (true) {
+            if (ancestorId.equals(todo.getId())) {
+                return INVALID_PARENT_MESSAGE;
+            }
+            Optional<Todo> ancestor = todoRepository.findById(ancestorId);
+            if (ancestor.isEmpty()) {
+                return depth == 1 ? PARENT_NOT_FOUND_MESSAGE : null;
+            }
+            ancestorId = ancestor.get().getParentId();
+            if (ancestorId == null) {
+                return null;
+            }
+            if (++depth > maxAncestors) {
+                return SUBTASK_TOO_DEEP_MESSAGE;
+            }
+        }
+    }
+
+    private static List<String> addError(List<String> errors, String message) {
+        if (errors == null) {
+            errors = new ArrayList<>(4);
+        }
+        errors.add(message);
         return errors;
     }
+
+    /**
+     * trim().isEmpty()と同じ判定を文字列を生成せずに行う
+     */
+    private static boolean isBlank(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
 }
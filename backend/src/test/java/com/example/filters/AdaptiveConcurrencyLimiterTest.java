@@ -0,0 +1,148 @@
+package com.example.filters;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private long now;
+
+    @Test
+    void startsAtMaximumLimit() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 10);
+
+        assertEquals(10, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void rejectsWhenLimitReached() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 2);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    void decreasesMultiplicativelyWhenWindowIsSlow() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 10);
+
+        runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES, SLOW);
+        assertEquals(9, limiter.getLimit());
+
+        runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES, SLOW);
+        assertEquals(8, limiter.getLimit());
+    }
+
+    @Test
+    void ignoresSingleSlowSample() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 10);
+
+        advanceWindow();
+        release(limiter, SLOW);
+        runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES, FAST);
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void waitsForEnoughSamplesBeforeAdjusting() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 10);
+
+        runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES - 1, SLOW);
+
+        assertEquals(10, limiter.getLimit());
+    }
+
+    @Test
+    void neverDropsBelowMinimum() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(3, 10);
+
+        for (int i = 0; i < 50; i++) {
+            runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES, SLOW);
+        }
+
+        assertEquals(3, limiter.getLimit());
+    }
+
+    @Test
+    void increasesAdditivelyWhenSaturatedAndFast() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 10);
+        runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES, SLOW);
+        runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES, SLOW);
+        assertEquals(8, limiter.getLimit());
+
+        // 上限まで使い切った状態で速いリクエストが続くと1ずつ広がる
+        fillToLimit(limiter);
+        runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES, FAST);
+        assertEquals(9, limiter.getLimit());
+
+        fillToLimit(limiter);
+        runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES, FAST);
+        fillToLimit(limiter);
+        runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES, FAST);
+        assertEquals(10, limiter.getLimit(), "最大値を超えない");
+    }
+
+    @Test
+    void doesNotIncreaseWhenUnderused() {
+        AdaptiveConcurrencyLimiter limiter = newLimiter(1, 10);
+        runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES, SLOW);
+
+        runWindow(limiter, AdaptiveConcurrencyLimiter.MIN_SAMPLES, FAST);
+
+        assertEquals(9, limiter.getLimit());
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(0, 10, 200));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimiter(5, 4, 200));
+    }
+
+    /**
+     * 集計期間の起点がリミッター生成時刻になるので、それ以降の時刻から進める
+     */
+    private AdaptiveConcurrencyLimiter newLimiter(int minLimit, int maxLimit) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(minLimit, maxLimit, 200);
+        now = System.nanoTime();
+        return limiter;
+    }
+
+    /**
+     * 次の集計期間に進め、1件ずつ実行枠を確保・解放する
+     */
+    private void runWindow(AdaptiveConcurrencyLimiter limiter, int samples, long latencyNanos) {
+        advanceWindow();
+        for (int i = 0; i < samples; i++) {
+            release(limiter, latencyNanos);
+        }
+    }
+
+    private void release(AdaptiveConcurrencyLimiter limiter, long latencyNanos) {
+        assertTrue(limiter.tryAcquire());
+        limiter.release(latencyNanos, now);
+    }
+
+    private void fillToLimit(AdaptiveConcurrencyLimiter limiter) {
+        int limit = limiter.getLimit();
+        for (int i = 0; i < limit; i++) {
+            assertTrue(limiter.tryAcquire());
+        }
+        assertFalse(limiter.tryAcquire());
+        for (int i = 0; i < limit; i++) {
+            limiter.release(FAST, now);
+        }
+    }
+
+    private void advanceWindow() {
+        now += AdaptiveConcurrencyLimiter.WINDOW_NANOS;
+    }
+}
@@ -0,0 +1,170 @@
+package com.example.filters;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class RateLimitFilterTest {
+    private static final String CLIENT_IP = "10.0.0.1";
+    private static final String API_KEY = "key-a";
+    // テスト実行中の補充で数件多く通ることがあるので、その分の余裕を見る
+    private static final int REFILL_MARGIN = 5;
+
+    private final AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(1, 10, 200);
+    private final RateLimitFilter filter = new RateLimitFilter(limiter, Set.of(API_KEY), new ObjectMapper(), 2);
+
+    @Test
+    void returnsSameBucketsForSameClient() {
+        assertSame(filter.getClientBuckets("ip:10.0.0.1"), filter.getClientBuckets("ip:10.0.0.1"));
+        assertNotSame(filter.getClientBuckets("ip:10.0.0.1"), filter.getClientBuckets("ip:10.0.0.2"));
+    }
+
+    @Test
+    void sharesOverflowBucketsWhenCapReached() {
+        filter.getClientBuckets("ip:10.0.0.1");
+        filter.getClientBuckets("ip:10.0.0.2");
+
+        RateLimitFilter.ClientBuckets overflow = filter.getClientBuckets("ip:10.0.0.3");
+        assertSame(overflow, filter.getClientBuckets("ip:10.0.0.4"));
+        assertEquals(2, filter.getTrackedClientCount());
+    }
+
+    @Test
+    void evictsOnlyIdleClients() {
+        long now = System.nanoTime();
+        filter.getClientBuckets("ip:10.0.0.1").read.tryAcquire(now);
+        filter.getClientBuckets("ip:10.0.0.2");
+
+        filter.evictIdleClients(now);
+
+        assertEquals(1, filter.getTrackedClientCount());
+        assertNotSame(filter.getClientBuckets("ip:10.0.0.3"), filter.getClientBuckets("ip:10.0.0.4"),
+            "破棄された分だけ新しいクライアントを個別に追跡できる");
+    }
+
+    @Test
+    void passesRequestWithinBudget() throws Exception {
+        HttpServletRequest req = request("GET", CLIENT_IP, null);
+        HttpServletResponse resp = response();
+        FilterChain chain = mock(FilterChain.class);
+
+        filter.doFilter(req, resp, chain);
+
+        verify(chain).doFilter(req, resp);
+        verify(resp, never()).setStatus(429);
+        assertEquals(0, limiter.getInFlight(), "処理後に実行枠を解放する");
+    }
+
+    @Test
+    void rejectsWithRetryAfterWhenReadBudgetExhausted() throws Exception {
+        HttpServletResponse resp = response();
+        int passed = sendUntilRejected("GET", CLIENT_IP, null, resp);
+
+        assertTrue(passed >= RateLimitFilter.READ_BURST, "バースト分は通る: " + passed);
+        verify(resp).setStatus(429);
+        verify(resp).setHeader("Retry-After", "1");
+        verify(resp).setHeader("Access-Control-Expose-Headers", "Retry-After");
+    }
+
+    @Test
+    void readAndWriteBudgetsAreSeparate() throws Exception {
+        int writes = sendUntilRejected("POST", CLIENT_IP, null, response());
+        assertTrue(writes >= RateLimitFilter.WRITE_BURST, "バースト分は通る: " + writes);
+
+        // 更新系を使い切っても参照系は通る
+        FilterChain chain = mock(FilterChain.class);
+        HttpServletRequest get = request("GET", CLIENT_IP, null);
+        HttpServletResponse resp = response();
+        filter.doFilter(get, resp, chain);
+        verify(chain).doFilter(get, resp);
+    }
+
+    @Test
+    void unregisteredApiKeysShareIpBudget() throws Exception {
+        // 未登録のキーを毎回変えても、接続元IPの予算を消費する
+        FilterChain chain = mock(FilterChain.class);
+        HttpServletResponse resp = response();
+        for (int i = 0; i < RateLimitFilter.WRITE_BURST + REFILL_MARGIN; i++) {
+            filter.doFilter(request("POST", CLIENT_IP, "random-" + i), resp, chain);
+        }
+        verify(resp, atLeastOnce()).setStatus(429);
+
+        // 登録済みのキーは接続元IPとは別の予算を持つ
+        HttpServletRequest keyed = request("POST", CLIENT_IP, API_KEY);
+        HttpServletResponse keyedResp = response();
+        filter.doFilter(keyed, keyedResp, chain);
+        verify(chain).doFilter(keyed, keyedResp);
+    }
+
+    @Test
+    void optionsRequestsBypassLimits() throws Exception {
+        sendUntilRejected("GET", CLIENT_IP, null, response());
+
+        HttpServletRequest req = request("OPTIONS", CLIENT_IP, null);
+        HttpServletResponse resp = response();
+        FilterChain chain = mock(FilterChain.class);
+        filter.doFilter(req, resp, chain);
+
+        verify(chain).doFilter(req, resp);
+        verify(resp, never()).setStatus(429);
+    }
+
+    @Test
+    void rejectsWhenConcurrencyLimitReached() throws Exception {
+        AdaptiveConcurrencyLimiter singleSlot = new AdaptiveConcurrencyLimiter(1, 1, 200);
+        RateLimitFilter limited = new RateLimitFilter(singleSlot, Set.of(), new ObjectMapper());
+        assertTrue(singleSlot.tryAcquire());
+
+        HttpServletRequest req = request("GET", CLIENT_IP, null);
+        HttpServletResponse resp = response();
+        FilterChain chain = mock(FilterChain.class);
+        limited.doFilter(req, resp, chain);
+
+        verify(chain, never()).doFilter(req, resp);
+        verify(resp).setStatus(429);
+        verify(resp).setHeader("Retry-After", "1");
+    }
+
+    /**
+     * 429が返るまで同じクライアントからリクエストを送る
+     * @param resp 全リクエストで共有するレスポンス(429が設定されるのは最後の1件のみ)
+     * @return 通ったリクエスト数
+     */
+    private int sendUntilRejected(String method, String ip, String apiKey, HttpServletResponse resp)
+            throws Exception {
+        int[] passed = {0};
+        FilterChain chain = (request, response) -> passed[0]++;
+        int limit = Math.max(RateLimitFilter.READ_BURST, RateLimitFilter.WRITE_BURST) * 2;
+        for (int i = 0; i < limit; i++) {
+            int before = passed[0];
+            filter.doFilter(request(method, ip, apiKey), resp, chain);
+            if (passed[0] == before) {
+                return before;
+            }
+        }
+        return fail("429が返りませんでした");
+    }
+
+    private static HttpServletRequest request(String method, String ip, String apiKey) {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(req.getMethod()).thenReturn(method);
+        when(req.getRemoteAddr()).thenReturn(ip);
+        when(req.getHeader("X-API-Key")).thenReturn(apiKey);
+        return req;
+    }
+
+    private static HttpServletResponse response() throws Exception {
+        HttpServletResponse resp = mock(HttpServletResponse.class);
+        when(resp.getWriter()).thenReturn(new PrintWriter(new StringWriter()));
+        return resp;
+    }
+}
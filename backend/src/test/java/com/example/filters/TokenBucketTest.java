@@ -0,0 +1,74 @@
+package com.example.filters;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenBucketTest {
+    private static final long START = TimeUnit.SECONDS.toNanos(100);
+    // 10トークン/秒 → 100msごとに1トークン補充
+    private static final long INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void allowsBurstUpToCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+
+        assertEquals(0, bucket.tryAcquire(START));
+        assertEquals(0, bucket.tryAcquire(START));
+        assertEquals(0, bucket.tryAcquire(START));
+        assertEquals(INTERVAL, bucket.tryAcquire(START), "4つ目は次の補充まで待つ必要がある");
+    }
+
+    @Test
+    void refillsOneTokenPerInterval() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+        for (int i = 0; i < 3; i++) {
+            bucket.tryAcquire(START);
+        }
+
+        assertEquals(INTERVAL / 2, bucket.tryAcquire(START + INTERVAL / 2));
+        assertEquals(0, bucket.tryAcquire(START + INTERVAL));
+        assertEquals(INTERVAL, bucket.tryAcquire(START + INTERVAL), "補充された1トークンのみ消費できる");
+    }
+
+    @Test
+    void rejectedRequestsDoNotConsumeTokens() {
+        TokenBucket bucket = new TokenBucket(10, 1);
+        bucket.tryAcquire(START);
+        for (int i = 0; i < 100; i++) {
+            bucket.tryAcquire(START);
+        }
+
+        assertEquals(0, bucket.tryAcquire(START + INTERVAL));
+    }
+
+    @Test
+    void doesNotAccumulateBeyondCapacity() {
+        TokenBucket bucket = new TokenBucket(10, 2);
+
+        long later = START + TimeUnit.SECONDS.toNanos(60);
+        assertEquals(0, bucket.tryAcquire(later));
+        assertEquals(0, bucket.tryAcquire(later));
+        assertTrue(bucket.tryAcquire(later) > 0);
+    }
+
+    @Test
+    void isFullUntilUsedAndAfterRefill() {
+        TokenBucket bucket = new TokenBucket(10, 3);
+        assertTrue(bucket.isFull(START));
+
+        bucket.tryAcquire(START);
+        bucket.tryAcquire(START);
+        assertFalse(bucket.isFull(START));
+        assertFalse(bucket.isFull(START + INTERVAL));
+        assertTrue(bucket.isFull(START + 2 * INTERVAL));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(0, 1));
+        assertThrows(IllegalArgumentException.class, () -> new TokenBucket(1, 0));
+    }
+}
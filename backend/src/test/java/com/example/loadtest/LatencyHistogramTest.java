@@ -0,0 +1,95 @@
+package com.example.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void linearRangeIsExact() {
+        for (long value = 0; value < 128; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertEquals(value, index);
+            assertEquals(value, LatencyHistogram.highestValueOf(index));
+        }
+    }
+
+    @Test
+    void firstLogBucketsCoverTwoValues() {
+        assertEquals(128, LatencyHistogram.indexOf(128));
+        assertEquals(128, LatencyHistogram.indexOf(129));
+        assertEquals(129, LatencyHistogram.indexOf(130));
+        assertEquals(129, LatencyHistogram.highestValueOf(128));
+        assertEquals(131, LatencyHistogram.highestValueOf(129));
+    }
+
+    @Test
+    void bucketsAreContiguousAndWithinRelativeError() {
+        long previousHighest = -1;
+        int previousIndex = -1;
+        for (long value = 0; value < 1_000_000; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            long highest = LatencyHistogram.highestValueOf(index);
+            assertTrue(highest >= value, "上限値は記録した値以上: " + value);
+            assertTrue(highest - value <= value / 64, "相対誤差が大きすぎる: " + value);
+            if (index != previousIndex) {
+                assertEquals(previousIndex + 1, index, "バケットの番号が飛んでいる: " + value);
+                assertEquals(previousHighest + 1, value, "前のバケットの直後から始まる: " + value);
+            }
+            previousIndex = index;
+            previousHighest = highest;
+        }
+    }
+
+    @Test
+    void highestValueMapsBackToSameBucket() {
+        for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 1) {
+            int index = LatencyHistogram.indexOf(value);
+            assertEquals(index, LatencyHistogram.indexOf(LatencyHistogram.highestValueOf(index)));
+        }
+    }
+
+    @Test
+    void handlesLargestValue() {
+        int index = LatencyHistogram.indexOf(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.highestValueOf(index));
+
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.getMaxValue());
+    }
+
+    @Test
+    void computesPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100; value++) {
+            histogram.record(value);
+        }
+
+        assertEquals(100, histogram.getTotalCount());
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(90, histogram.getValueAtPercentile(90));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+        assertEquals(100, histogram.getMaxValue());
+    }
+
+    @Test
+    void emptyHistogramReturnsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+
+        assertEquals(0, histogram.getTotalCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+        assertEquals(0, histogram.getMaxValue());
+    }
+
+    @Test
+    void negativeValuesAreRecordedAsZero() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(-5);
+
+        assertEquals(0, histogram.getMaxValue());
+        assertEquals(1, histogram.getTotalCount());
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.loadtest;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OperationStatsTest {
+
+    @Test
+    void classifiesResponsesByStatus() {
+        OperationStats stats = new OperationStats();
+        stats.recordResponse(200, 1_000_000);
+        stats.recordResponse(404, 1_000_000);
+        stats.recordResponse(429, 1_000_000);
+        stats.recordResponse(500, 1_000_000);
+        stats.recordFailure(1_000_000);
+
+        assertEquals(1, stats.getSucceeded());
+        assertEquals(1, stats.getNotFound());
+        assertEquals(1, stats.getRateLimited());
+        assertEquals(2, stats.getFailed());
+        assertEquals(5, stats.getLatency().getTotalCount());
+    }
+
+    @Test
+    void droppedRequestsAreNotRecordedAsLatency() {
+        OperationStats stats = new OperationStats();
+        stats.recordResponse(200, 1_000_000);
+        stats.recordDropped();
+
+        assertEquals(1, stats.getDropped());
+        assertEquals(1, stats.getLatency().getTotalCount());
+        assertTrue(stats.getLatency().getMaxValue() < 1_100, "送信しなかったリクエストのレイテンシは記録しない");
+    }
+}
@@ -0,0 +1,124 @@
+package com.example.repositories;
+
+import com.example.config.DatabaseConfig;
+import com.example.models.Todo;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TodoRepositoryTest {
+    @TempDir
+    Path tempDir;
+
+    private TodoRepository todoRepository;
+
+    @BeforeEach
+    void setUp() {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + tempDir.resolve("test.db"));
+        DatabaseConfig.createSchema(dataSource);
+        todoRepository = new TodoRepository(dataSource);
+    }
+
+    @Test
+    void deleteRemovesSubtasksRecursively() {
+        Todo parent = save("親", null, List.of("work"));
+        Todo child = save("子", parent.getId(), List.of("work", "urgent"));
+        Todo grandchild = save("孫", child.getId(), List.of("urgent"));
+        Todo sibling = save("別の子", parent.getId(), List.of());
+        Todo unrelated = save("無関係", null, List.of("work"));
+
+        List<Long> deleted = todoRepository.deleteById(parent.getId());
+
+        assertEquals(4, deleted.size());
+        assertTrue(deleted.containsAll(List.of(parent.getId(), child.getId(), grandchild.getId(), sibling.getId())));
+        assertEquals(1, todoRepository.count());
+        assertTrue(todoRepository.existsById(unrelated.getId()));
+        assertFalse(todoRepository.existsById(grandchild.getId()));
+
+        // タグの関連も削除されている
+        Map<Long, String> links = new HashMap<>();
+        todoRepository.forEachTagLink(links::put);
+        assertEquals(Map.of(unrelated.getId(), "work"), links);
+    }
+
+    @Test
+    void deleteSubtaskKeepsParent() {
+        Todo parent = save("親", null, List.of());
+        Todo child = save("子", parent.getId(), List.of());
+
+        assertEquals(List.of(child.getId()), todoRepository.deleteById(child.getId()));
+
+        assertTrue(todoRepository.existsById(parent.getId()));
+        assertEquals(List.of(), todoRepository.findByParentId(parent.getId()));
+    }
+
+    @Test
+    void deleteTerminatesWhenParentsFormCycle() {
+        Todo first = save("1", null, List.of());
+        Todo second = save("2", first.getId(), List.of());
+        // 検証を通さずに循環を作る
+        first.setParentId(second.getId());
+        todoRepository.save(first);
+
+        List<Long> deleted = todoRepository.deleteById(first.getId());
+
+        assertEquals(2, deleted.size());
+        assertEquals(0, todoRepository.count());
+    }
+
+    @Test
+    void findSubtreeHeightCountsDeepestBranch() {
+        Todo root = save("根", null, List.of());
+        Todo child = save("子", root.getId(), List.of());
+        save("孫", child.getId(), List.of());
+        save("別の子", root.getId(), List.of());
+        Todo leaf = save("葉", null, List.of());
+
+        assertEquals(3, todoRepository.findSubtreeHeight(root.getId(), 10));
+        assertEquals(2, todoRepository.findSubtreeHeight(child.getId(), 10));
+        assertEquals(1, todoRepository.findSubtreeHeight(leaf.getId(), 10));
+        // 上限を超える分はたどらない
+        assertEquals(2, todoRepository.findSubtreeHeight(root.getId(), 2));
+    }
+
+    @Test
+    void findByTagsRequiresAllTags() {
+        Todo both = save("両方", null, List.of("work", "urgent"));
+        save("片方", null, List.of("work"));
+        Todo both2 = save("両方と他", null, List.of("urgent", "home", "work"));
+
+        List<Todo> found = todoRepository.findByTags(List.of("work", "urgent"), null, 100);
+
+        assertEquals(List.of(both2.getId(), both.getId()), found.stream().map(Todo::getId).toList());
+        assertEquals(List.of(), todoRepository.findByTags(List.of("work", "missing"), null, 100));
+    }
+
+    @Test
+    void findByTagsReturnsPageBeforeCursor() {
+        Todo first = save("1", null, List.of("work"));
+        save("対象外", null, List.of("home"));
+        Todo second = save("2", null, List.of("work"));
+        Todo third = save("3", null, List.of("work"));
+
+        assertEquals(List.of(third.getId(), second.getId()),
+            todoRepository.findByTags(List.of("work"), null, 2).stream().map(Todo::getId).toList());
+        assertEquals(List.of(first.getId()),
+            todoRepository.findByTags(List.of("work"), second.getId(), 2).stream().map(Todo::getId).toList());
+    }
+
+    private Todo save(String title, Long parentId, List<String> tags) {
+        Todo todo = new Todo(title, null, "medium", "work");
+        todo.setParentId(parentId);
+        todo.setTags(tags);
+        return todoRepository.save(todo);
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TagIndexTest {
+    private final TagIndex tagIndex = new TagIndex();
+
+    @Test
+    void isNotReadyUntilLoaded() {
+        assertFalse(tagIndex.isReady());
+
+        tagIndex.markReady();
+
+        assertTrue(tagIndex.isReady());
+    }
+
+    @Test
+    void intersectsTagsAndReturnsIdsDescending() {
+        tagIndex.add(1, "work");
+        tagIndex.add(1, "urgent");
+        tagIndex.add(2, "work");
+        tagIndex.add(3, "work");
+        tagIndex.add(3, "urgent");
+        tagIndex.markReady();
+
+        assertEquals(List.of(3L, 2L, 1L), tagIndex.findTodoIdsWithAllTags(List.of("work"), null, 100));
+        assertEquals(List.of(3L, 1L), tagIndex.findTodoIdsWithAllTags(List.of("work", "urgent"), null, 100));
+        assertEquals(List.of(3L, 1L), tagIndex.findTodoIdsWithAllTags(List.of("urgent", "work"), null, 100));
+    }
+
+    @Test
+    void returnsPageOfIdsBeforeCursor() {
+        for (long id = 1; id <= 5; id++) {
+            tagIndex.add(id, "work");
+            if (id % 2 == 1) {
+                tagIndex.add(id, "urgent");
+            }
+        }
+
+        assertEquals(List.of(5L, 4L), tagIndex.findTodoIdsWithAllTags(List.of("work"), null, 2));
+        assertEquals(List.of(3L, 2L), tagIndex.findTodoIdsWithAllTags(List.of("work"), 4L, 2));
+        assertEquals(List.of(1L), tagIndex.findTodoIdsWithAllTags(List.of("work", "urgent"), 3L, 2));
+        assertEquals(List.of(), tagIndex.findTodoIdsWithAllTags(List.of("work"), 1L, 2));
+    }
+
+    @Test
+    void returnsEmptyForUnknownTagOrNoTags() {
+        tagIndex.add(1, "work");
+
+        assertEquals(List.of(), tagIndex.findTodoIdsWithAllTags(List.of("work", "home"), null, 100));
+        assertEquals(List.of(), tagIndex.findTodoIdsWithAllTags(List.of(), null, 100));
+    }
+
+    @Test
+    void replaceClearsPreviousTags() {
+        tagIndex.add(1, "work");
+        tagIndex.add(1, "urgent");
+        tagIndex.markReady();
+
+        tagIndex.replace(1, List.of("home"));
+
+        assertEquals(List.of(), tagIndex.findTodoIdsWithAllTags(List.of("work"), null, 100));
+        assertEquals(List.of(), tagIndex.findTodoIdsWithAllTags(List.of("urgent"), null, 100));
+        assertEquals(List.of(1L), tagIndex.findTodoIdsWithAllTags(List.of("home"), null, 100));
+    }
+
+    @Test
+    void replaceWithNullRemovesAllTags() {
+        tagIndex.add(1, "work");
+        tagIndex.markReady();
+
+        tagIndex.replace(1, null);
+
+        assertEquals(List.of(), tagIndex.findTodoIdsWithAllTags(List.of("work"), null, 100));
+    }
+
+    @Test
+    void removeAllClearsDeletedTodos() {
+        tagIndex.add(1, "work");
+        tagIndex.add(2, "work");
+        tagIndex.add(3, "home");
+        tagIndex.markReady();
+
+        tagIndex.removeAll(List.of(1L, 3L));
+
+        assertEquals(List.of(2L), tagIndex.findTodoIdsWithAllTags(List.of("work"), null, 100));
+        assertEquals(List.of(), tagIndex.findTodoIdsWithAllTags(List.of("home"), null, 100));
+    }
+
+    @Test
+    void loadDoesNotOverwriteUpdatesMadeWhileLoading() {
+        // 読み込み中に更新・削除されたTodoの古いタグは、後から読み込まれても無視される
+        tagIndex.replace(1, List.of("home"));
+        tagIndex.removeAll(List.of(2L));
+        tagIndex.add(1, "work");
+        tagIndex.add(2, "work");
+        tagIndex.add(3, "work");
+        tagIndex.markReady();
+
+        assertEquals(List.of(3L), tagIndex.findTodoIdsWithAllTags(List.of("work"), null, 100));
+        assertEquals(List.of(1L), tagIndex.findTodoIdsWithAllTags(List.of("home"), null, 100));
+
+        // 読み込み完了後の追加はそのまま反映される
+        tagIndex.add(1, "work");
+        assertEquals(List.of(3L, 1L), tagIndex.findTodoIdsWithAllTags(List.of("work"), null, 100));
+    }
+
+    @Test
+    void dropsTagsThatNoLongerHaveTodos() {
+        tagIndex.add(1, "work");
+        tagIndex.add(2, "once");
+        tagIndex.add(3, "twice");
+        tagIndex.markReady();
+
+        tagIndex.replace(2, List.of("work"));
+        tagIndex.removeAll(List.of(3L));
+
+        assertEquals(1, tagIndex.getTagCount());
+        assertEquals(List.of(2L, 1L), tagIndex.findTodoIdsWithAllTags(List.of("work"), null, 100));
+    }
+}
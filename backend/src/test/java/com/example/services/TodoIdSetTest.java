@@ -0,0 +1,92 @@
+package com.example.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TodoIdSetTest {
+    private final TodoIdSet set = new TodoIdSet();
+
+    @Test
+    void addsAndRemovesIds() {
+        assertTrue(set.add(5));
+        assertTrue(set.add(1));
+        assertFalse(set.add(5));
+
+        assertTrue(set.contains(1));
+        assertTrue(set.contains(5));
+        assertFalse(set.contains(3));
+        assertEquals(2, set.size());
+
+        assertTrue(set.remove(1));
+        assertFalse(set.remove(1));
+        assertFalse(set.contains(1));
+        assertEquals(1, set.size());
+    }
+
+    @Test
+    void findsPreviousId() {
+        set.add(10);
+        set.add(20);
+        set.add(30);
+
+        assertEquals(30, set.previous(Integer.MAX_VALUE));
+        assertEquals(20, set.previous(29));
+        assertEquals(20, set.previous(20));
+        assertEquals(-1, set.previous(9));
+        assertEquals(-1, set.previous(-1));
+    }
+
+    @Test
+    void smallSetOfLargeIdsStaysArray() {
+        // 大きなIDが1件だけでもビットマップにしない
+        set.add(1_000_000);
+
+        assertFalse(set.isBitmap());
+        assertEquals(1_000_000, set.previous(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void switchesToBitmapAndBack() {
+        int count = TodoIdSet.ARRAY_MAX_SIZE + 1;
+        for (int id = count; id >= 1; id--) {
+            set.add(id);
+        }
+        assertTrue(set.isBitmap());
+        assertEquals(count, set.size());
+        assertEquals(count, set.previous(Integer.MAX_VALUE));
+
+        for (int id = 1; id <= count; id += 2) {
+            set.remove(id);
+        }
+        assertEquals(TodoIdSet.ARRAY_MAX_SIZE / 2, set.size());
+        assertTrue(set.isBitmap(), "切り替えを繰り返さないよう、半分までは戻さない");
+
+        set.remove(2);
+        assertFalse(set.isBitmap(), "半分を下回ったら配列に戻す");
+        assertFalse(set.contains(2));
+        assertTrue(set.contains(4));
+        assertFalse(set.contains(3));
+        assertEquals(count - 1, set.previous(Integer.MAX_VALUE));
+    }
+
+    @Test
+    void keepsIdsSortedInBothModes() {
+        List<Integer> expected = new ArrayList<>();
+        for (int id = 0; id < TodoIdSet.ARRAY_MAX_SIZE * 2; id += 3) {
+            set.add(id);
+        }
+        for (int id = 0; id < TodoIdSet.ARRAY_MAX_SIZE * 2; id += 3) {
+            expected.add(0, id);
+        }
+
+        List<Integer> actual = new ArrayList<>();
+        for (int id = set.previous(Integer.MAX_VALUE); id >= 0; id = set.previous(id - 1)) {
+            actual.add(id);
+        }
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.services;
+
+import com.example.config.DatabaseConfig;
+import com.example.exceptions.ValidationException;
+import com.example.models.Todo;
+import com.example.repositories.TodoRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sqlite.SQLiteDataSource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TodoServiceTest {
+    private static final String PARENT_NOT_FOUND = "親Todoが存在しません";
+    private static final String INVALID_PARENT = "自身またはそのサブタスクを親Todoに指定することはできません";
+    private static final String SUBTASK_TOO_DEEP = "サブタスクの階層は10段以内にしてください";
+    private static final String INVALID_TAG = "タグは30文字以内で、カンマを含めずに入力してください";
+
+    @TempDir
+    Path tempDir;
+
+    private TodoRepository todoRepository;
+    private TagIndex tagIndex;
+    private TodoService todoService;
+
+    @BeforeEach
+    void setUp() {
+        SQLiteDataSource dataSource = new SQLiteDataSource();
+        dataSource.setUrl("jdbc:sqlite:" + tempDir.resolve("test.db"));
+        DatabaseConfig.createSchema(dataSource);
+        todoRepository = new TodoRepository(dataSource);
+        tagIndex = new TagIndex();
+        tagIndex.markReady();
+        todoService = new TodoService(todoRepository, tagIndex);
+    }
+
+    @Test
+    void omittedParentIdKeepsParentAndClearParentRemovesIt() {
+        Todo parent = create("親", null);
+        Todo child = create("子", parent.getId());
+
+        Todo renamed = todoService.updateTodo(update(child.getId(), "名前を変更"));
+        assertEquals(parent.getId(), renamed.getParentId());
+
+        Todo clear = update(child.getId(), null);
+        clear.setClearParent(true);
+        Todo detached = todoService.updateTodo(clear);
+        assertNull(detached.getParentId());
+        assertNull(todoRepository.findById(child.getId()).orElseThrow().getParentId());
+    }
+
+    @Test
+    void tagsAreTrimmedAndDeduplicated() {
+        Todo created = create("タグ", null, " work", "work ", "urgent", "urgent");
+
+        assertEquals(List.of("work", "urgent"), created.getTags());
+        assertEquals(List.of("work", "urgent"), todoRepository.findById(created.getId()).orElseThrow().getTags());
+        assertEquals(List.of(created.getId()), tagIndex.findTodoIdsWithAllTags(List.of("work", "urgent"), null, 100));
+
+        Todo updates = update(created.getId(), null);
+        updates.setTags(List.of("home ", " home"));
+        assertEquals(List.of("home"), todoService.updateTodo(updates).getTags());
+    }
+
+    @Test
+    void rejectsTagsWithCommaOrBlank() {
+        assertValidationError(INVALID_TAG, () -> create("カンマ", null, "a,b"));
+        assertValidationError(INVALID_TAG, () -> create("空白", null, "work", "  "));
+        assertEquals(0, todoRepository.count());
+    }
+
+    @Test
+    void rejectsMissingParent() {
+        assertValidationError(PARENT_NOT_FOUND, () -> create("子", 999L));
+
+        Todo todo = create("Todo", null);
+        Todo updates = update(todo.getId(), null);
+        updates.setParentId(999L);
+        assertValidationError(PARENT_NOT_FOUND, () -> todoService.updateTodo(updates));
+    }
+
+    @Test
+    void rejectsSelfAndDescendantAsParent() {
+        Todo root = create("親", null);
+        Todo child = create("子", root.getId());
+        Todo grandchild = create("孫", child.getId());
+
+        Todo self = update(root.getId(), null);
+        self.setParentId(root.getId());
+        assertValidationError(INVALID_PARENT, () -> todoService.updateTodo(self));
+
+        Todo descendant = update(root.getId(), null);
+        descendant.setParentId(grandchild.getId());
+        assertValidationError(INVALID_PARENT, () -> todoService.updateTodo(descendant));
+        assertNull(todoRepository.findById(root.getId()).orElseThrow().getParentId());
+    }
+
+    @Test
+    void depthLimitIncludesMovedSubtree() {
+        // 高さ5の木と、6段目のサブタスクまである木を作る
+        List<Todo> moved = createChain(5);
+        List<Todo> target = createChain(7);
+
+        // 6段目のサブタスクの下に高さ5の木を付けると、末端が11段目になる
+        Todo tooDeep = update(moved.get(0).getId(), null);
+        tooDeep.setParentId(target.get(6).getId());
+        assertValidationError(SUBTASK_TOO_DEEP, () -> todoService.updateTodo(tooDeep));
+
+        // 5段目の下なら末端は10段目に収まる
+        Todo fits = update(moved.get(0).getId(), null);
+        fits.setParentId(target.get(5).getId());
+        assertEquals(target.get(5).getId(), todoService.updateTodo(fits).getParentId());
+    }
+
+    @Test
+    void fallsBackToDatabaseUntilTagIndexIsReady() {
+        Todo first = create("1", null, "work", "urgent");
+        create("2", null, "work");
+        Todo third = create("3", null, "urgent", "work");
+
+        // 読み込み前の索引は空なので、結果はデータベースから得たものになる
+        TodoService loadingService = new TodoService(todoRepository, new TagIndex());
+        List<Long> expected = List.of(third.getId(), first.getId());
+        assertEquals(expected, ids(loadingService.getTodosByTags(List.of("work", "urgent", "work"), null, 100)));
+        assertEquals(List.of(first.getId()),
+            ids(loadingService.getTodosByTags(List.of("work", "urgent"), third.getId(), 100)));
+
+        assertEquals(expected, ids(todoService.getTodosByTags(List.of("work", "urgent", "work"), null, 100)));
+        assertEquals(List.of(third.getId()), ids(todoService.getTodosByTags(List.of("work", "urgent"), null, 1)));
+    }
+
+    private List<Todo> createChain(int length) {
+        List<Todo> chain = new ArrayList<>();
+        Long parentId = null;
+        for (int i = 0; i < length; i++) {
+            Todo todo = create("階層" + (i + 1), parentId);
+            chain.add(todo);
+            parentId = todo.getId();
+        }
+        return chain;
+    }
+
+    private Todo create(String title, Long parentId, String... tags) {
+        Todo todo = new Todo(title, null, "medium", "work");
+        todo.setParentId(parentId);
+        todo.setTags(Arrays.asList(tags));
+        return todoService.createTodo(todo);
+    }
+
+    /**
+     * PUTの本文と同じく、指定したもの以外のフィールドを省略した更新内容を作る
+     */
+    private static Todo update(Long id, String title) {
+        Todo updates = new Todo();
+        updates.setId(id);
+        updates.setTitle(title);
+        return updates;
+    }
+
+    private static List<Long> ids(List<Todo> todos) {
+        return todos.stream().map(Todo::getId).toList();
+    }
+
+    private static void assertValidationError(String expected, Runnable action) {
+        ValidationException e = assertThrows(ValidationException.class, action::run);
+        assertTrue(e.getErrors().contains(expected), () -> "errors: " + e.getErrors());
+    }
+}